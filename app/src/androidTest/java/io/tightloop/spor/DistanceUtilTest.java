@@ -0,0 +1,57 @@
+package io.tightloop.spor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Conversion between .spor and GPX, which needs android.util.Xml and so runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DistanceUtilTest {
+    private static final long START = 1_600_000_000_000L;
+
+    @Test
+    public void writesSegmentPassesAndLaps() throws IOException {
+        ByteArrayOutputStream spor = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(spor);
+        for (int point = 0; point < 20; point++) {
+            writeRecord(dos, 59.9 + point * 1e-4, 10.7, 100, START + point * 5_000L);
+            if (point == 9) {
+                writeRecord(dos, Double.NaN, SporRecorder.EVENT_SEGMENT, 2, START + point * 5_000L + 2_000);
+                writeRecord(dos, Double.NaN, SporRecorder.EVENT_LAP, 1, START + point * 5_000L + 3_000);
+            }
+        }
+
+        ByteArrayOutputStream gpx = new ByteArrayOutputStream();
+        TrackSummary summary = DistanceUtil.spor2Gpx(new ByteArrayInputStream(spor.toByteArray()), gpx);
+        String text = new String(gpx.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(text, text.contains("<name>Segment 3</name>"));
+        assertTrue(text, text.contains("<type>segment</type>"));
+        assertEquals(21, text.split("<trkpt").length - 1);
+        assertEquals(2, text.split("<trkseg").length - 1);
+
+        // Segment markers aren't track points of their own when summarized again.
+        TrackSummary backfilled = DistanceUtil.gpx2Summary(new ByteArrayInputStream(gpx.toByteArray()));
+        assertEquals(summary.getDistanceMeters(), backfilled.getDistanceMeters(), 0.01);
+        assertEquals(summary.getDurationMillis(), backfilled.getDurationMillis());
+    }
+
+    private static void writeRecord(DataOutputStream dos, double lat, double lng, double alt, long timestamp) throws IOException {
+        dos.writeDouble(lat);
+        dos.writeDouble(lng);
+        dos.writeDouble(alt);
+        dos.writeLong(timestamp);
+    }
+}
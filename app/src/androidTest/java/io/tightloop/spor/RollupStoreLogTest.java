@@ -0,0 +1,84 @@
+package io.tightloop.spor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovery and compaction of the rollup log, which needs android.util.Log and so runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RollupStoreLogTest {
+    private static final long START = 1_600_000_000_000L;
+
+    private File logFile;
+
+    @Before
+    public void setUp() {
+        logFile = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(), "rollups");
+        logFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    @Test
+    public void keepsEntriesBeforePartialEntry() throws IOException {
+        RollupStore store = new RollupStore(logFile, null);
+        store.add("a", track(0));
+        store.add("b", track(1));
+        assertEquals(2, store.getMonth(START).getTracks());
+        long complete = logFile.length();
+
+        // As left by a crash while appending.
+        try (FileOutputStream os = new FileOutputStream(logFile, true)) {
+            os.write(new byte[]{1, 0, 1, 'c', 0, 0});
+        }
+
+        RollupStore reloaded = new RollupStore(logFile, null);
+        assertEquals(2, reloaded.getMonth(START).getTracks());
+        assertEquals(complete, logFile.length());
+
+        // Entries appended after recovery are kept. Queries wait for queued updates.
+        reloaded.add("c", track(2));
+        assertEquals(3, reloaded.getMonth(START).getTracks());
+        assertEquals(3, new RollupStore(logFile, null).getMonth(START).getTracks());
+    }
+
+    @Test
+    public void compactsRemovedTracks() {
+        RollupStore store = new RollupStore(logFile, null);
+        store.add("a", track(0));
+        store.add("b", track(1));
+        store.remove("a");
+        assertEquals(1, store.getMonth(START).getTracks());
+        long uncompacted = logFile.length();
+
+        RollupStore reloaded = new RollupStore(logFile, null);
+        assertEquals(1, reloaded.getMonth(START).getTracks());
+        assertTrue(logFile.length() < uncompacted);
+        assertEquals(track(1).getDistanceMeters(), reloaded.getLongestDistanceMeters(), 1e-9);
+    }
+
+    private static TrackSummary track(int track) {
+        TrackSummary summary = new TrackSummary();
+        for (int point = 0; point < 500; point++) {
+            summary.add(START + track * 3_600_000L + point * 5_000L, 59.9 + point * (1 + track) * 1e-4, 10.7, 100);
+        }
+        summary.finish();
+        return summary;
+    }
+}
@@ -0,0 +1,117 @@
+package io.tightloop.spor;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exports a corpus of 1,000 one hour tracks with one worker and with one worker per core, and reports the speedup.
+ * Finished recordings are stored as .gpx and only copied into the archive, which is bound by storage rather than
+ * cores. Conversion of left-over .spor files is where the workers pay off, so that is where scaling is asserted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SporExporterBenchmark {
+    private static final int TRACKS = 1_000;
+    private static final int POINTS_PER_TRACK = 720;
+    // Least speedup per core for converting .spor files, well short of linear to leave room for slower cores and
+    // the single threaded archive writer.
+    private static final double MIN_EFFICIENCY = 0.5;
+
+    private File storageDir;
+    private File zipFile;
+
+    @Before
+    public void createDirs() {
+        File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+        storageDir = new File(cacheDir, "benchmark");
+        zipFile = new File(cacheDir, "benchmark.zip");
+        assertTrue(storageDir.isDirectory() || storageDir.mkdirs());
+    }
+
+    @After
+    public void deleteCorpus() {
+        for (File file : storageDir.listFiles()) {
+            file.delete();
+        }
+        storageDir.delete();
+        zipFile.delete();
+    }
+
+    @Test
+    public void sporConversionScalesWithCores() throws IOException {
+        createSporCorpus();
+        int cores = Runtime.getRuntime().availableProcessors();
+        double speedup = measureSpeedup("spor", cores);
+
+        if (cores > 1) {
+            double efficiency = speedup / cores;
+            assertTrue(String.format(Locale.US, "Speedup %.2f on %d cores, efficiency %.2f below %.2f", speedup, cores, efficiency, MIN_EFFICIENCY),
+                    efficiency >= MIN_EFFICIENCY);
+        }
+    }
+
+    @Test
+    public void gpxExport() throws IOException {
+        createSporCorpus();
+        for (File sporFile : storageDir.listFiles()) {
+            File gpxFile = new File(storageDir, sporFile.getName().replace(".spor", ".gpx"));
+            DistanceUtil.spor2Gpx(sporFile, gpxFile);
+            assertTrue(sporFile.delete());
+        }
+
+        // Only reported, copying doesn't scale with cores.
+        measureSpeedup("gpx", Runtime.getRuntime().availableProcessors());
+    }
+
+    private void createSporCorpus() throws IOException {
+        for (int track = 0; track < TRACKS; track++) {
+            File sporFile = new File(storageDir, String.format(Locale.US, "%014d.spor", track));
+            try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(sporFile))) {
+                for (int point = 0; point < POINTS_PER_TRACK; point++) {
+                    dos.writeDouble(59.9 + point * 1e-4);
+                    dos.writeDouble(10.7 + track * 1e-3);
+                    dos.writeDouble(100 + point % 20);
+                    dos.writeLong(1_600_000_000_000L + point * 5_000L);
+                }
+            }
+        }
+    }
+
+    private double measureSpeedup(String corpus, int cores) throws IOException {
+        // Warm up, so neither run pays for class loading and JIT.
+        SporExporter.exportAll(storageDir, zipFile, cores);
+
+        long singleNanos = timeExport(1);
+        long parallelNanos = timeExport(cores);
+        double speedup = (double) singleNanos / parallelNanos;
+        Log.i("SporExporterBenchmark", String.format(Locale.US, "%d %s tracks: 1 thread %dms, %d threads %dms, speedup %.2f",
+                TRACKS, corpus, singleNanos / 1_000_000, cores, parallelNanos / 1_000_000, speedup));
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(TRACKS, zip.size());
+        }
+        return speedup;
+    }
+
+    private long timeExport(int parallelism) throws IOException {
+        long start = System.nanoTime();
+        assertEquals(TRACKS, SporExporter.exportAll(storageDir, zipFile, parallelism));
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,78 @@
+package io.tightloop.spor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SporExporterTest {
+    private File storageDir;
+    private File zipFile;
+
+    @Before
+    public void createDirs() {
+        File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+        storageDir = new File(cacheDir, "export");
+        zipFile = new File(cacheDir, "export.zip");
+        assertTrue(storageDir.isDirectory() || storageDir.mkdirs());
+    }
+
+    @After
+    public void deleteDirs() {
+        for (File file : storageDir.listFiles()) {
+            file.delete();
+        }
+        storageDir.delete();
+        zipFile.delete();
+    }
+
+    @Test
+    public void exportsRecordingInProgress() throws IOException {
+        // As seen while the recorder is between the writes of a record.
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(new File(storageDir, "recording.spor")))) {
+            for (int point = 0; point < 10; point++) {
+                dos.writeDouble(59.9 + point * 1e-4);
+                dos.writeDouble(10.7);
+                dos.writeDouble(100);
+                dos.writeLong(1_600_000_000_000L + point * 5_000L);
+            }
+            dos.writeDouble(59.91);
+            dos.writeDouble(10.7);
+            dos.writeDouble(100);
+        }
+
+        assertEquals(1, SporExporter.exportAll(storageDir, zipFile));
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            ZipEntry entry = zip.getEntry("recording.gpx");
+            String gpx = read(zip.getInputStream(entry));
+            assertEquals(10, gpx.split("<trkpt").length - 1);
+        }
+    }
+
+    private static String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            bos.write(buffer, 0, read);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,193 @@
+package io.tightloop.spor;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size series of (x, y) points for live charts, downsampled incrementally with Largest-Triangle-Three-Buckets.
+ * Points are gathered into buckets of stride consecutive points. When a bucket and the one after it have closed, the
+ * point of the first forming the largest triangle with the point picked before it and the average of the next is
+ * kept. When all buckets are used, neighbouring buckets are merged pairwise and the stride doubles, so every bucket
+ * always covers the same number of points and the series stays uniform over the whole session, with at most capacity
+ * points regardless of how many have been added. Points are only picked from raw data, or when merging, from the
+ * two picks of the merged buckets, never by downsampling the whole series again.
+ * <p>
+ * Appending only allocates when the stride doubles, to hold the raw points of the larger buckets.
+ * <p>
+ * Not thread-safe, the buffer is expected to be fed and drawn from the main thread.
+ */
+public final class ChartBuffer {
+    // Point picked for each closed bucket, and the average of all points in it.
+    private final float[] pickX;
+    private final float[] pickY;
+    private final float[] avgX;
+    private final float[] avgY;
+    private int buckets;
+    private int stride = 1;
+
+    // Last closed bucket, waiting for the next to close before its point is picked.
+    private float[] heldX = new float[16];
+    private float[] heldY = new float[16];
+    private int held;
+    private float heldAvgX;
+    private float heldAvgY;
+    // Point shown for the held bucket until then.
+    private int heldPick;
+
+    // Bucket being filled.
+    private float[] fillX = new float[16];
+    private float[] fillY = new float[16];
+    private int filled;
+    private double fillSumX;
+    private double fillSumY;
+
+    public ChartBuffer(int capacity) {
+        if (capacity < 6) {
+            throw new IllegalArgumentException("Capacity must be at least 6.");
+        }
+        // One point per bucket, leaving room for the held and the filling bucket. Merging needs an even number of
+        // buckets.
+        int maxBuckets = (capacity - 2) & ~1;
+        this.pickX = new float[maxBuckets];
+        this.pickY = new float[maxBuckets];
+        this.avgX = new float[maxBuckets];
+        this.avgY = new float[maxBuckets];
+    }
+
+    public void add(float x, float y) {
+        fillX[filled] = x;
+        fillY[filled] = y;
+        filled++;
+        fillSumX += x;
+        fillSumY += y;
+
+        if (filled == stride) {
+            closeBucket();
+        }
+        if (held > 0) {
+            // Until the filling bucket closes, its points so far stand in for its average.
+            heldPick = filled > 0
+                    ? largestTriangle(heldX, heldY, held, (float) (fillSumX / filled), (float) (fillSumY / filled))
+                    : largestTriangle(heldX, heldY, held, heldX[held - 1], heldY[held - 1]);
+        }
+    }
+
+    public void clear() {
+        buckets = 0;
+        held = 0;
+        filled = 0;
+        fillSumX = fillSumY = 0;
+        stride = 1;
+    }
+
+    public int size() {
+        return buckets + (held > 0 ? 1 : 0) + (filled > 0 ? 1 : 0);
+    }
+
+    public float getX(int index) {
+        if (index < buckets) {
+            return pickX[index];
+        }
+        // The series ends with the last point added.
+        return index == buckets && held > 0 ? heldX[heldPick] : fillX[filled - 1];
+    }
+
+    public float getY(int index) {
+        if (index < buckets) {
+            return pickY[index];
+        }
+        return index == buckets && held > 0 ? heldY[heldPick] : fillY[filled - 1];
+    }
+
+    private void closeBucket() {
+        float avgX = (float) (fillSumX / filled);
+        float avgY = (float) (fillSumY / filled);
+        if (held > 0) {
+            int pick = largestTriangle(heldX, heldY, held, avgX, avgY);
+            pickX[buckets] = heldX[pick];
+            pickY[buckets] = heldY[pick];
+            this.avgX[buckets] = heldAvgX;
+            this.avgY[buckets] = heldAvgY;
+            buckets++;
+        }
+
+        // The filling bucket is held until the next one closes.
+        float[] swapX = heldX;
+        float[] swapY = heldY;
+        heldX = fillX;
+        heldY = fillY;
+        held = filled;
+        heldAvgX = avgX;
+        heldAvgY = avgY;
+        fillX = swapX;
+        fillY = swapY;
+        filled = 0;
+        fillSumX = fillSumY = 0;
+
+        if (buckets == pickX.length) {
+            merge();
+        }
+    }
+
+    /**
+     * @return index of the point forming the largest triangle with the previous pick and (cx, cy). The first bucket
+     * keeps its first point.
+     */
+    private int largestTriangle(float[] x, float[] y, int count, float cx, float cy) {
+        if (buckets == 0) {
+            return 0;
+        }
+        float ax = pickX[buckets - 1];
+        float ay = pickY[buckets - 1];
+        int largest = 0;
+        float largestArea = -1;
+        for (int i = 0; i < count; i++) {
+            float area = Math.abs((ax - cx) * (y[i] - ay) - (ax - x[i]) * (cy - ay));
+            if (area > largestArea) {
+                largest = i;
+                largestArea = area;
+            }
+        }
+        return largest;
+    }
+
+    private void merge() {
+        // The first bucket keeps the first point.
+        for (int i = 1; i < buckets / 2; i++) {
+            int a = 2 * i;
+            int b = a + 1;
+            // Average of the next merged bucket, or of the first half of the one after the last, which is held.
+            float cx = b + 2 < buckets ? (avgX[b + 1] + avgX[b + 2]) / 2 : heldAvgX;
+            float cy = b + 2 < buckets ? (avgY[b + 1] + avgY[b + 2]) / 2 : heldAvgY;
+            float ax = pickX[i - 1];
+            float ay = pickY[i - 1];
+            float areaA = Math.abs((ax - cx) * (pickY[a] - ay) - (ax - pickX[a]) * (cy - ay));
+            float areaB = Math.abs((ax - cx) * (pickY[b] - ay) - (ax - pickX[b]) * (cy - ay));
+            // On ties the earlier point is kept, as when picking from a bucket.
+            int pick = areaB > areaA ? b : a;
+            pickX[i] = pickX[pick];
+            pickY[i] = pickY[pick];
+            avgX[i] = (avgX[a] + avgX[b]) / 2;
+            avgY[i] = (avgY[a] + avgY[b]) / 2;
+        }
+        avgX[0] = (avgX[0] + avgX[1]) / 2;
+        avgY[0] = (avgY[0] + avgY[1]) / 2;
+        buckets /= 2;
+        stride *= 2;
+
+        // The held bucket carries on as the first half of a bucket of the doubled stride.
+        if (fillX.length < stride) {
+            fillX = Arrays.copyOf(fillX, stride);
+            fillY = Arrays.copyOf(fillY, stride);
+        }
+        System.arraycopy(heldX, 0, fillX, 0, held);
+        System.arraycopy(heldY, 0, fillY, 0, held);
+        filled = held;
+        fillSumX = (double) heldAvgX * held;
+        fillSumY = (double) heldAvgY * held;
+        held = 0;
+        if (heldX.length < stride) {
+            heldX = new float[stride];
+            heldY = new float[stride];
+        }
+    }
+}
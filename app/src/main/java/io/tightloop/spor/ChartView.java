@@ -0,0 +1,67 @@
+package io.tightloop.spor;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+public class ChartView extends View {
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private ChartBuffer buffer;
+
+    public ChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(3 * getResources().getDisplayMetrics().density);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setColor(ContextCompat.getColor(context, android.R.color.holo_blue_dark));
+    }
+
+    public void setBuffer(@Nullable ChartBuffer buffer) {
+        this.buffer = buffer;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (buffer == null || buffer.size() < 2) {
+            return;
+        }
+
+        float minX = buffer.getX(0);
+        float maxX = buffer.getX(buffer.size() - 1);
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < buffer.size(); i++) {
+            minY = Math.min(minY, buffer.getY(i));
+            maxY = Math.max(maxY, buffer.getY(i));
+        }
+
+        float inset = paint.getStrokeWidth();
+        float left = getPaddingLeft() + inset;
+        float top = getPaddingTop() + inset;
+        float width = getWidth() - getPaddingRight() - inset - left;
+        float height = getHeight() - getPaddingBottom() - inset - top;
+        float spanX = maxX > minX ? maxX - minX : 1;
+        float spanY = maxY > minY ? maxY - minY : 1;
+
+        path.rewind();
+        for (int i = 0; i < buffer.size(); i++) {
+            float px = left + (buffer.getX(i) - minX) / spanX * width;
+            float py = top + height - (buffer.getY(i) - minY) / spanY * height;
+            if (i == 0) {
+                path.moveTo(px, py);
+            } else {
+                path.lineTo(px, py);
+            }
+        }
+        canvas.drawPath(path, paint);
+    }
+}
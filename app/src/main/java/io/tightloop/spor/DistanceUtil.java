@@ -2,6 +2,8 @@ package io.tightloop.spor;
 
 import android.util.Xml;
 
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.DataInputStream;
@@ -9,16 +11,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
 public final class DistanceUtil {
-    private static final SimpleDateFormat DATE_FMT =
-            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+    // SimpleDateFormat is not thread-safe, give each converting thread its own.
+    private static final ThreadLocal<SimpleDateFormat> DATE_FMT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        }
+    };
 
     private static final long EARTH_RADIUS = 6_378_136L;
+    // Latitude, longitude, altitude and timestamp of each .spor record.
+    private static final int RECORD_BYTES = 32;
+    // Type of the extra trkpt marking a segment pass.
+    private static final String SEGMENT_TYPE = "segment";
 
     private static class E implements AutoCloseable {
         private final XmlSerializer xml;
@@ -55,6 +69,19 @@ public final class DistanceUtil {
     private DistanceUtil() {
     }
 
+    // Opens a trkpt with its elevation and time, for the caller to close.
+    private static E trackPoint(XmlSerializer xml, double lat, double lng, double alt, long timestamp) throws IOException {
+        E trkpt = new E(xml, "trkpt").attr("lat", lat).attr("lon", lng);
+        try (E ignored = new E(xml, "ele")) {
+            xml.text(String.format(Locale.US, "%f", alt));
+        }
+
+        try (E ignored = new E(xml, "time")) {
+            xml.text(DATE_FMT.get().format(new Date(timestamp)));
+        }
+        return trkpt;
+    }
+
     public static double distanceInMeters(double lat1, double lat2, double lng1, double lng2, double alt1, double alt2) {
         double latDistance = Math.toRadians(lat2 - lat1);
         double lngDistance = Math.toRadians(lng2 - lng1);
@@ -67,33 +94,105 @@ public final class DistanceUtil {
         return Math.sqrt(distance);
     }
 
-    public static void spor2Gpx(File sporFile, File gpxFile) throws IOException {
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(sporFile));
-             FileOutputStream fos = new FileOutputStream(gpxFile)) {
-
-            XmlSerializer xml = Xml.newSerializer();
-            xml.setOutput(fos, StandardCharsets.UTF_8.name());
-            xml.startDocument(StandardCharsets.UTF_8.name(), true);
-            try (E ignored0 = new E(xml, "http://www.topografix.com/GPX/1/0", "gpx").attr("version", "1.0")
-                    .attr("creator", "spor2gpx"); E ignored1 = new E(xml, "trkseg")) {
-                while (dis.available() >= 24) {
-                    double lat = dis.readDouble();
-                    double lng = dis.readDouble();
-                    double alt = dis.readDouble();
-                    try (E ignored2 = new E(xml, "trkpt").attr("lat", lat).attr("lon", lng)) {
-                        try (E ignored3 = new E(xml, "ele")) {
-                            xml.text(String.format(Locale.US, "%f", alt));
-                        }
+    public static TrackSummary spor2Gpx(File sporFile, File gpxFile) throws IOException {
+        try (InputStream is = new FileInputStream(sporFile);
+             OutputStream os = new FileOutputStream(gpxFile)) {
+            return spor2Gpx(is, os);
+        }
+    }
 
-                        try (E ignored4 = new E(xml, "time")) {
-                            xml.text(DATE_FMT.format(new Date(dis.readLong())));
+    public static TrackSummary spor2Gpx(InputStream sporStream, OutputStream gpxStream) throws IOException {
+        DataInputStream dis = new DataInputStream(sporStream);
+        TrackSummary summary = new TrackSummary();
+        XmlSerializer xml = Xml.newSerializer();
+        xml.setOutput(gpxStream, StandardCharsets.UTF_8.name());
+        xml.startDocument(StandardCharsets.UTF_8.name(), true);
+        try (E ignored0 = new E(xml, "http://www.topografix.com/GPX/1/0", "gpx").attr("version", "1.0")
+                .attr("creator", "spor2gpx"); E ignored1 = new E(xml, "trkseg")) {
+            double lastLat = Double.NaN;
+            double lastLng = Double.NaN;
+            double lastAlt = Double.NaN;
+            // A recording still being written, or cut short by a crash, may end in a partial record. Stop before it.
+            while (dis.available() >= RECORD_BYTES) {
+                double lat = dis.readDouble();
+                double lng = dis.readDouble();
+                double alt = dis.readDouble();
+                long timestamp = dis.readLong();
+                if (Double.isNaN(lat)) {
+                    if (lng == SporRecorder.EVENT_LAP) {
+                        xml.endTag("", "trkseg");
+                        xml.startTag("", "trkseg");
+                    } else if (lng == SporRecorder.EVENT_SEGMENT && !Double.isNaN(lastLat)) {
+                        // Events have no position of their own, mark the pass at the last fix, at the time it crossed
+                        // the end line.
+                        try (E ignored2 = trackPoint(xml, lastLat, lastLng, lastAlt, timestamp)) {
+                            try (E ignored3 = new E(xml, "name")) {
+                                xml.text(String.format(Locale.US, "Segment %d", (int) alt + 1));
+                            }
+
+                            try (E ignored4 = new E(xml, "type")) {
+                                xml.text(SEGMENT_TYPE);
+                            }
                         }
                     }
+                    continue;
+                }
+
+                summary.add(timestamp, lat, lng, alt);
+                trackPoint(xml, lat, lng, alt, timestamp).close();
+                lastLat = lat;
+                lastLng = lng;
+                lastAlt = alt;
+            }
+        } finally {
+            xml.endDocument();
+            xml.flush();
+        }
+        summary.finish();
+        return summary;
+    }
+
+    /**
+     * Summarizes a track written by spor2Gpx, for tracks recorded before summaries were kept.
+     */
+    public static TrackSummary gpx2Summary(InputStream gpxStream) throws IOException {
+        TrackSummary summary = new TrackSummary();
+        try {
+            XmlPullParser xml = Xml.newPullParser();
+            xml.setInput(gpxStream, null);
+            double lat = Double.NaN;
+            double lng = Double.NaN;
+            double alt = 0;
+            long timestamp = -1;
+            boolean marker = false;
+            for (int event = xml.getEventType(); event != XmlPullParser.END_DOCUMENT; event = xml.next()) {
+                if (event == XmlPullParser.START_TAG) {
+                    switch (xml.getName()) {
+                        case "trkpt":
+                            lat = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                            lng = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                            alt = 0;
+                            timestamp = -1;
+                            marker = false;
+                            break;
+                        case "ele":
+                            alt = Double.parseDouble(xml.nextText().trim());
+                            break;
+                        case "time":
+                            timestamp = DATE_FMT.get().parse(xml.nextText().trim()).getTime();
+                            break;
+                        case "type":
+                            marker = SEGMENT_TYPE.equals(xml.nextText().trim());
+                            break;
+                    }
+                } else if (event == XmlPullParser.END_TAG && "trkpt".equals(xml.getName()) && timestamp >= 0 && !marker) {
+                    summary.add(timestamp, lat, lng, alt);
                 }
-            } finally {
-                xml.endDocument();
-                xml.flush();
             }
+        } catch (XmlPullParserException | ParseException | NumberFormatException e) {
+            throw new IOException("Invalid GPX", e);
         }
+        summary.finish();
+        return summary;
     }
 }
@@ -1,20 +1,33 @@
 package io.tightloop.spor;
 
+import android.app.Activity;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class History extends Fragment {
+    private List<String> files;
+    private HistoryItemAdapter adapter;
+    private TextView rollupsView;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -24,12 +37,100 @@ public class History extends Fragment {
         recyclerView.setHasFixedSize(true);
         File storageDir = requireActivity().getExternalFilesDir(null);
 
-        List<String> files = Arrays.asList(Objects.requireNonNull(storageDir.list()));
-
-        recyclerView.setAdapter(new HistoryItemAdapter(files));
+        files = new ArrayList<>(Arrays.asList(Objects.requireNonNull(storageDir.list())));
+        adapter = new HistoryItemAdapter(files, this::onItemLongClicked);
+        recyclerView.setAdapter(adapter);
 
         LinearLayoutManager layoutManager = new LinearLayoutManager(getActivity());
         recyclerView.setLayoutManager(layoutManager);
+
+        final Button btn = view.findViewById(R.id.export);
+        btn.setOnClickListener(this::onExportButtonClicked);
+
+        rollupsView = view.findViewById(R.id.rollups);
+        updateRollups();
         return view;
     }
+
+    private void onItemLongClicked(int position) {
+        final String item = files.get(position);
+        if (!item.endsWith(".gpx")) {
+            // Recordings still in progress can't be deleted.
+            return;
+        }
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.DeleteTitle, item))
+                .setPositiveButton(R.string.DeleteButtonText, (dialog, which) -> deleteRecording(item))
+                .setNegativeButton(R.string.CancelButtonText, null)
+                .show();
+    }
+
+    private void deleteRecording(String item) {
+        final Activity activity = requireActivity();
+        String name = item.substring(0, item.lastIndexOf('.'));
+        if (!SporRecorder.deleteRecording(activity.getExternalFilesDir(null), name, RollupStore.getInstance(activity))) {
+            Toast.makeText(activity, getString(R.string.DeleteFailed, item), Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        int position = files.indexOf(item);
+        files.remove(position);
+        adapter.notifyItemRemoved(position);
+        updateRollups();
+    }
+
+    private void updateRollups() {
+        final Activity activity = requireActivity();
+        final TextView view = rollupsView;
+
+        // Queries wait for the store to load, keep them off the main thread.
+        new Thread(() -> {
+            RollupStore rollups = RollupStore.getInstance(activity);
+            long now = System.currentTimeMillis();
+            RollupStore.Totals day = rollups.getDay(now);
+            RollupStore.Totals week = rollups.getWeek(now);
+            RollupStore.Totals month = rollups.getMonth(now);
+            StringBuilder text = new StringBuilder(activity.getString(R.string.RollupSummary,
+                    day.getDistanceMeters() / 1000, week.getDistanceMeters() / 1000, week.getTracks(),
+                    month.getDistanceMeters() / 1000, month.getTracks()));
+            for (int r = 0; r < TrackSummary.RECORD_METERS.length; r++) {
+                long millis = rollups.getFastestMillis(r);
+                if (millis >= 0) {
+                    text.append('\n').append(activity.getString(R.string.RecordSummary, TrackSummary.RECORD_METERS[r] / 1000, formatRecordTime(millis)));
+                }
+            }
+
+            activity.runOnUiThread(() -> view.setText(text));
+        }, "RollupSummary").start();
+    }
+
+    private static String formatRecordTime(long millis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        return String.format(Locale.US, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    public void onExportButtonClicked(View view) {
+        final Activity activity = requireActivity();
+        final File storageDir = activity.getExternalFilesDir(null);
+        final File zipFile = new File(activity.getExternalCacheDir(), "spor.zip");
+        view.setEnabled(false);
+
+        new Thread(() -> {
+            String message;
+            try {
+                int count = SporExporter.exportAll(storageDir, zipFile);
+                message = activity.getString(R.string.ExportDone, count, zipFile);
+            } catch (IOException e) {
+                Log.e("History", String.format("Failed to export to %s", zipFile), e);
+                message = activity.getString(R.string.ExportFailed);
+            }
+
+            final String result = message;
+            activity.runOnUiThread(() -> {
+                view.setEnabled(true);
+                Toast.makeText(activity, result, Toast.LENGTH_LONG).show();
+            });
+        }, "SporExporter").start();
+    }
 }
\ No newline at end of file
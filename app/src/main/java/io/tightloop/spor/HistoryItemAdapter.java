@@ -12,6 +12,10 @@ import java.util.List;
 
 public class HistoryItemAdapter extends RecyclerView.Adapter<HistoryItemAdapter.HistoryItemViewHolder> {
 
+    public interface OnItemLongClickListener {
+        void onItemLongClick(int position);
+    }
+
     public static class HistoryItemViewHolder extends RecyclerView.ViewHolder {
         private final TextView textView;
 
@@ -22,9 +26,11 @@ public class HistoryItemAdapter extends RecyclerView.Adapter<HistoryItemAdapter.
     }
 
     private final List<String> items;
+    private final OnItemLongClickListener onItemLongClickListener;
 
-    public HistoryItemAdapter(List<String> items) {
+    public HistoryItemAdapter(List<String> items, OnItemLongClickListener onItemLongClickListener) {
         this.items = items;
+        this.onItemLongClickListener = onItemLongClickListener;
     }
 
     @NonNull
@@ -32,7 +38,16 @@ public class HistoryItemAdapter extends RecyclerView.Adapter<HistoryItemAdapter.
     public HistoryItemViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Inflating R.layout.name_item
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.history_item, parent, false);
-        return new HistoryItemViewHolder(view);
+        HistoryItemViewHolder holder = new HistoryItemViewHolder(view);
+        view.setOnLongClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            onItemLongClickListener.onItemLongClick(position);
+            return true;
+        });
+        return holder;
     }
 
     @Override
@@ -0,0 +1,332 @@
+package io.tightloop.spor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects laps and segment passes from a stream of fixes. Gates are lines across the track, hashed into a grid by
+ * their bounding box, so each step between two fixes is only checked against the gates in the cells it touches,
+ * independent of how many gates and segments are registered. A gate passed is re-armed once the track has moved
+ * away from it.
+ */
+public final class LapDetector {
+    // Half the width of a gate line across the track.
+    private static final double GATE_HALF_WIDTH_METERS = 30;
+    // Cells are a fixed number of degrees wide on every row, so the cell of a point only depends on its own
+    // coordinates. They are narrower than this towards the poles, a bounding box just covers more of them.
+    private static final double CELL_METERS = 60;
+    // A gate passed, crossed backwards or created near the track is disarmed until the track has been this far
+    // from it, so GPS jitter around a gate doesn't count as passing it again and again.
+    private static final double REARM_METERS = 60;
+    // Longer steps are gaps in the track, e.g. lost signal, and aren't checked against gates.
+    private static final double MAX_STEP_METERS = 1_000;
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    public interface Listener {
+        void onLap(long timestamp, int lap, long lapMillis);
+
+        void onSegment(long timestamp, int segment, long segmentMillis);
+    }
+
+    /**
+     * Gate line across the track, passed when the track crosses it in the direction of travel it was created with.
+     */
+    public static final class Line {
+        // Travelling from (lat2, lng2) towards (lat1, lng1), the direction of travel is to the right.
+        private final double lat1;
+        private final double lng1;
+        private final double lat2;
+        private final double lng2;
+
+        Line(double lat1, double lng1, double lat2, double lng2) {
+            this.lat1 = lat1;
+            this.lng1 = lng1;
+            this.lat2 = lat2;
+            this.lng2 = lng2;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeDouble(lat1);
+            out.writeDouble(lng1);
+            out.writeDouble(lat2);
+            out.writeDouble(lng2);
+        }
+
+        static Line read(DataInput in) throws IOException {
+            return new Line(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private long startTimestamp = -1;
+
+        Segment(int id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Gate {
+        private final Line line;
+        // Segment started or ended by passing this gate, both null for the lap gate.
+        private final Segment starts;
+        private final Segment ends;
+        private long lastCheckedFix = -1;
+        private long passedTimestamp;
+        private boolean armed;
+
+        Gate(Line line, Segment starts, Segment ends) {
+            this.line = line;
+            this.starts = starts;
+            this.ends = ends;
+        }
+    }
+
+    private final LongMap<List<Gate>> cells = new LongMap<>();
+    // Segment start gates passed by the current step, handled after any segment ends passed by it.
+    private final List<Gate> startsPassed = new ArrayList<>(1);
+    // Gates waiting for the track to move away before they can be passed again. Only ever the few gates near it.
+    private final List<Gate> disarmed = new ArrayList<>(4);
+    private final Listener listener;
+    private Gate lapGate;
+    private long lapStartTimestamp;
+    private int laps;
+    private long fixCount;
+    private double lat = Double.NaN;
+    private double lng = Double.NaN;
+    private long timestamp;
+    // Unit vector of the last step, in meters east and north.
+    private double headingX = Double.NaN;
+    private double headingY = Double.NaN;
+
+    public LapDetector(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a segment timed from passing the start line to passing the end line.
+     *
+     * @param id segment id, as reported to {@link Listener#onSegment}.
+     */
+    public void addSegment(int id, Line start, Line end) {
+        Segment segment = new Segment(id);
+        insert(new Gate(start, segment, null));
+        insert(new Gate(end, null, segment));
+    }
+
+    /**
+     * Moves the lap gate from the start point to the given line. The current lap starts over from now.
+     */
+    public void setLapGate(Line line) {
+        if (lapGate != null) {
+            remove(lapGate);
+            disarmed.remove(lapGate);
+        }
+        lapGate = new Gate(line, null, null);
+        insert(lapGate);
+        lapStartTimestamp = timestamp;
+    }
+
+    /**
+     * @return a gate line across the track at the last fix, or null before the first step has been taken.
+     */
+    public Line lineHere() {
+        return Double.isNaN(headingX) ? null : lineAt(lat, lng, headingX, headingY);
+    }
+
+    public void onFix(long timestamp, double lat, double lng) {
+        long fix = fixCount++;
+        if (!Double.isNaN(this.lat)) {
+            double east = (lng - this.lng) * metersPerDegreeLng(this.lat);
+            double north = (lat - this.lat) * METERS_PER_DEGREE;
+            double meters = Math.hypot(east, north);
+            if (meters > 0) {
+                headingX = east / meters;
+                headingY = north / meters;
+                if (lapGate == null) {
+                    // The start line is across the first step, at the first fix.
+                    lapGate = new Gate(lineAt(this.lat, this.lng, headingX, headingY), null, null);
+                    insert(lapGate);
+                    lapStartTimestamp = this.timestamp;
+                }
+            }
+            if (meters > 0 && meters <= MAX_STEP_METERS) {
+                checkStep(fix, this.timestamp, this.lat, this.lng, timestamp, lat, lng);
+            }
+        }
+        for (int i = disarmed.size() - 1; i >= 0; i--) {
+            Gate gate = disarmed.get(i);
+            if (metersFrom(gate.line, lat, lng) > REARM_METERS) {
+                gate.armed = true;
+                disarmed.remove(i);
+            }
+        }
+
+        this.lat = lat;
+        this.lng = lng;
+        this.timestamp = timestamp;
+    }
+
+    private void checkStep(long fix, long fromTimestamp, double fromLat, double fromLng, long toTimestamp, double toLat, double toLng) {
+        long minX = cellX(Math.min(fromLng, toLng));
+        long maxX = cellX(Math.max(fromLng, toLng));
+        long minY = cellY(Math.min(fromLat, toLat));
+        long maxY = cellY(Math.max(fromLat, toLat));
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                List<Gate> gates = cells.get(key(x, y));
+                if (gates == null) {
+                    continue;
+                }
+                for (int i = 0; i < gates.size(); i++) {
+                    Gate gate = gates.get(i);
+                    // Gates spanning several cells are only checked once per step.
+                    if (gate.lastCheckedFix == fix) {
+                        continue;
+                    }
+                    gate.lastCheckedFix = fix;
+
+                    long passed = passed(gate.line, fromTimestamp, fromLat, fromLng, toTimestamp, toLat, toLng);
+                    if (passed == BACKWARDS) {
+                        disarm(gate);
+                    } else if (passed >= 0 && gate.armed) {
+                        disarm(gate);
+                        onPassed(gate, passed);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < startsPassed.size(); i++) {
+            Gate gate = startsPassed.get(i);
+            gate.starts.startTimestamp = gate.passedTimestamp;
+        }
+        startsPassed.clear();
+    }
+
+    private void onPassed(Gate gate, long timestamp) {
+        if (gate == lapGate) {
+            laps++;
+            listener.onLap(timestamp, laps, timestamp - lapStartTimestamp);
+            lapStartTimestamp = timestamp;
+        } else if (gate.ends != null) {
+            if (gate.ends.startTimestamp >= 0) {
+                listener.onSegment(timestamp, gate.ends.id, timestamp - gate.ends.startTimestamp);
+                gate.ends.startTimestamp = -1;
+            }
+        } else {
+            gate.passedTimestamp = timestamp;
+            startsPassed.add(gate);
+        }
+    }
+
+    private void disarm(Gate gate) {
+        if (gate.armed) {
+            gate.armed = false;
+            disarmed.add(gate);
+        }
+    }
+
+    // Returned by passed() for a step crossing the gate against the direction of the line.
+    private static final long BACKWARDS = -2;
+
+    /**
+     * @return time the step crossed the line, interpolated between the fixes, BACKWARDS if it crossed the gate
+     * against the direction of the line, or -1 if it didn't cross the gate.
+     */
+    private static long passed(Line line, long fromTimestamp, double fromLat, double fromLng, long toTimestamp, double toLat, double toLng) {
+        // Local plane in meters, relative to the line, so a fix is on the same side of it in both steps it ends
+        // and starts. A fix exactly on the line is counted in the step ending on it.
+        double scale = metersPerDegreeLng(line.lat1);
+        double bx = (line.lng2 - line.lng1) * scale;
+        double by = (line.lat2 - line.lat1) * METERS_PER_DEGREE;
+        double px = (fromLng - line.lng1) * scale;
+        double py = (fromLat - line.lat1) * METERS_PER_DEGREE;
+        double qx = (toLng - line.lng1) * scale;
+        double qy = (toLat - line.lat1) * METERS_PER_DEGREE;
+
+        double fromSide = cross(0, 0, bx, by, px, py);
+        double toSide = cross(0, 0, bx, by, qx, qy);
+        boolean forwards = fromSide < 0 && toSide >= 0;
+        if (!forwards && !(fromSide >= 0 && toSide < 0)) {
+            return -1;
+        }
+        if (cross(px, py, qx, qy, 0, 0) * cross(px, py, qx, qy, bx, by) > 0) {
+            // Crossed the extension of the line, outside the gate.
+            return -1;
+        }
+        if (!forwards) {
+            return BACKWARDS;
+        }
+        double fraction = fromSide / (fromSide - toSide);
+        return fromTimestamp + Math.round((toTimestamp - fromTimestamp) * fraction);
+    }
+
+    // Cross product of (b - a) and (c - a), negative when c is to the right of a -> b.
+    private static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    private static Line lineAt(double lat, double lng, double headingX, double headingY) {
+        // Endpoints to the left and right of the direction of travel.
+        double east = -headingY * GATE_HALF_WIDTH_METERS / metersPerDegreeLng(lat);
+        double north = headingX * GATE_HALF_WIDTH_METERS / METERS_PER_DEGREE;
+        return new Line(lat + north, lng + east, lat - north, lng - east);
+    }
+
+    private void insert(Gate gate) {
+        // Gates created near the track, e.g. at the last fix, are armed once it has moved away.
+        if (!Double.isNaN(lat) && metersFrom(gate.line, lat, lng) <= REARM_METERS) {
+            disarmed.add(gate);
+        } else {
+            gate.armed = true;
+        }
+
+        Line line = gate.line;
+        for (long x = cellX(Math.min(line.lng1, line.lng2)); x <= cellX(Math.max(line.lng1, line.lng2)); x++) {
+            for (long y = cellY(Math.min(line.lat1, line.lat2)); y <= cellY(Math.max(line.lat1, line.lat2)); y++) {
+                List<Gate> gates = cells.get(key(x, y));
+                if (gates == null) {
+                    gates = new ArrayList<>(1);
+                    cells.put(key(x, y), gates);
+                }
+                gates.add(gate);
+            }
+        }
+    }
+
+    private void remove(Gate gate) {
+        Line line = gate.line;
+        for (long x = cellX(Math.min(line.lng1, line.lng2)); x <= cellX(Math.max(line.lng1, line.lng2)); x++) {
+            for (long y = cellY(Math.min(line.lat1, line.lat2)); y <= cellY(Math.max(line.lat1, line.lat2)); y++) {
+                cells.get(key(x, y)).remove(gate);
+            }
+        }
+    }
+
+    // Distance from the middle of the line.
+    private static double metersFrom(Line line, double lat, double lng) {
+        double midLat = (line.lat1 + line.lat2) / 2;
+        double midLng = (line.lng1 + line.lng2) / 2;
+        return Math.hypot((lng - midLng) * metersPerDegreeLng(midLat), (lat - midLat) * METERS_PER_DEGREE);
+    }
+
+    private static double metersPerDegreeLng(double lat) {
+        return METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+    }
+
+    private static long cellX(double lng) {
+        return (long) Math.floor(lng * METERS_PER_DEGREE / CELL_METERS);
+    }
+
+    private static long cellY(double lat) {
+        return (long) Math.floor(lat * METERS_PER_DEGREE / CELL_METERS);
+    }
+
+    private static long key(long cellX, long cellY) {
+        return (cellX << 32) ^ (cellY & 0xffffffffL);
+    }
+}
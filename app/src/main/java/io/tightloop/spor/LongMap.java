@@ -0,0 +1,56 @@
+package io.tightloop.spor;
+
+/**
+ * Open addressing hash map from primitive long keys, so lookups don't box. Only what the spatial grid needs: entries
+ * are never removed, and null values are not allowed.
+ */
+final class LongMap<V> {
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    void put(long key, V value) {
+        if (2 * (size + 1) > keys.length) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        insert(key, value);
+    }
+
+    private void insert(long key, Object value) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            size++;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private static int index(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -10,6 +10,7 @@ import android.os.IBinder;
 import android.util.Log;
 import android.view.View;
 import android.widget.GridLayout;
+import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
@@ -80,8 +81,18 @@ public class MainActivity extends AppCompatActivity {
                 runOnUiThread(() -> {
                     if (sporService != null) {
                         sporViewModel.setLocationData(new SporViewModel.LocationData(sporService.lat, sporService.lng, sporService.alt, sporService.distanceInCentimeters, sporService.getSpeedInMetersPerSecond(), sporService.getElapsedNanos()));
+                        sporViewModel.setCharts(sporService.elevationChart, sporService.speedChart);
+                        SporViewModel.LapData lapData = sporViewModel.getLapData().getValue();
+                        if (lapData == null || lapData.events != sporService.lapEvents) {
+                            sporViewModel.setLapData(new SporViewModel.LapData(sporService.lapEvents, sporService.laps, sporService.lastLapMillis, sporService.bestLapMillis, sporService.lastSegment, sporService.lastSegmentMillis, sporService.bestSegmentMillis));
+                        }
                     } else {
                         sporViewModel.setLocationData(new SporViewModel.LocationData(Double.NaN, Double.NaN, Double.NaN, 0, 0, 0));
+                        sporViewModel.setCharts(null, null);
+                        SporViewModel.LapData lapData = sporViewModel.getLapData().getValue();
+                        if (lapData == null || lapData.events != 0) {
+                            sporViewModel.setLapData(new SporViewModel.LapData(0, 0, 0, 0, -1, 0, 0));
+                        }
                     }
                 });
             }
@@ -107,7 +118,7 @@ public class MainActivity extends AppCompatActivity {
             sporViewModel.setSporingState(true);
         } else {
             sporViewModel.setSporingState(false);
-            SporRecorder.recoverRecordings(this.getApplicationContext().getExternalFilesDir(null));
+            SporRecorder.recoverRecordings(this.getApplicationContext().getExternalFilesDir(null), RollupStore.getInstance(this));
         }
     }
 
@@ -160,6 +171,18 @@ public class MainActivity extends AppCompatActivity {
         sporViewModel.setSporingState(false);
     }
 
+    public void markLapGate() {
+        if (sporService != null) {
+            Toast.makeText(this, sporService.markLapGate(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    public void markSegment() {
+        if (sporService != null) {
+            Toast.makeText(this, sporService.markSegment(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
     public void toggleTracking() {
         boolean state = Objects.requireNonNull(sporViewModel.getSporingState().getValue());
         if (state) {
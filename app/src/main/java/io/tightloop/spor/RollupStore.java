@@ -0,0 +1,362 @@
+package io.tightloop.spor;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per day, week and month totals and personal records over all finished tracks. Tracks are added and removed as
+ * deltas, and persisted as an append-only log of track summaries, so neither updates nor queries depend on how much
+ * history there is, and track files are never re-read.
+ * <p>
+ * The store is loaded and updated on its own worker thread. Updates are queued and return immediately, queries wait
+ * for the worker and must not be made from the main thread.
+ */
+public final class RollupStore {
+    private static final byte ENTRY_ADD = 1;
+    private static final byte ENTRY_REMOVE = 2;
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static RollupStore instance;
+
+    public static class Totals {
+        private double distanceMeters;
+        private long durationMillis;
+        private double elevationGainMeters;
+        private int tracks;
+
+        private Totals() {
+        }
+
+        private Totals(Totals totals) {
+            distanceMeters = totals.distanceMeters;
+            durationMillis = totals.durationMillis;
+            elevationGainMeters = totals.elevationGainMeters;
+            tracks = totals.tracks;
+        }
+
+        private void add(TrackSummary summary, int sign) {
+            distanceMeters += sign * summary.getDistanceMeters();
+            durationMillis += sign * summary.getDurationMillis();
+            elevationGainMeters += sign * summary.getElevationGainMeters();
+            tracks += sign;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public double getElevationGainMeters() {
+            return elevationGainMeters;
+        }
+
+        public int getTracks() {
+            return tracks;
+        }
+    }
+
+    private static final Totals EMPTY = new Totals();
+
+    private final File logFile;
+    // Directory of the tracks, backfilled from when the log doesn't exist yet. May be null.
+    private final File storageDir;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "RollupStore"));
+    // Only accessed from the worker.
+    private final Map<String, TrackSummary> tracks = new HashMap<>();
+    private final Map<Integer, Totals> days = new HashMap<>();
+    private final Map<Integer, Totals> weeks = new HashMap<>();
+    private final Map<Integer, Totals> months = new HashMap<>();
+    // Track holding each record, null if no track covers the distance.
+    private final String[] fastest = new String[TrackSummary.RECORD_METERS.length];
+    private String longest;
+
+    public static synchronized RollupStore getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new RollupStore(new File(appContext.getFilesDir(), "rollups"), appContext.getExternalFilesDir(null));
+        }
+        return instance;
+    }
+
+    RollupStore(File logFile, File storageDir) {
+        this.logFile = logFile;
+        this.storageDir = storageDir;
+        worker.execute(this::load);
+    }
+
+    public void add(String track, TrackSummary summary) {
+        if (summary.getStartTimestamp() < 0) {
+            // No points recorded, nothing to add.
+            return;
+        }
+
+        worker.execute(() -> {
+            if (tracks.containsKey(track)) {
+                Log.w("RollupStore", String.format("Track %s already added", track));
+                return;
+            }
+
+            try (DataOutputStream dos = append()) {
+                writeAdd(dos, track, summary);
+            } catch (IOException e) {
+                Log.e("RollupStore", String.format("Failed to store rollup for %s", track), e);
+            }
+            apply(track, summary);
+        });
+    }
+
+    public void remove(String track) {
+        worker.execute(() -> {
+            if (!tracks.containsKey(track)) {
+                return;
+            }
+
+            try (DataOutputStream dos = append()) {
+                dos.writeByte(ENTRY_REMOVE);
+                dos.writeUTF(track);
+            } catch (IOException e) {
+                Log.e("RollupStore", String.format("Failed to store rollup removal of %s", track), e);
+            }
+            unapply(track);
+        });
+    }
+
+    public Totals getDay(long timestamp) {
+        return query(() -> new Totals(get(days, dayKey(timestamp))));
+    }
+
+    public Totals getWeek(long timestamp) {
+        return query(() -> new Totals(get(weeks, weekKey(timestamp))));
+    }
+
+    public Totals getMonth(long timestamp) {
+        return query(() -> new Totals(get(months, monthKey(timestamp))));
+    }
+
+    /**
+     * @return fastest time covering TrackSummary.RECORD_METERS[record] over all tracks, or -1 if none does.
+     */
+    public long getFastestMillis(int record) {
+        return query(() -> fastest[record] == null ? -1 : tracks.get(fastest[record]).getFastestMillis(record));
+    }
+
+    public double getLongestDistanceMeters() {
+        return query(() -> longest == null ? 0 : tracks.get(longest).getDistanceMeters());
+    }
+
+    private <T> T query(Callable<T> query) {
+        try {
+            return worker.submit(query).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void apply(String track, TrackSummary summary) {
+        tracks.put(track, summary);
+        long timestamp = summary.getStartTimestamp();
+        totals(days, dayKey(timestamp)).add(summary, 1);
+        totals(weeks, weekKey(timestamp)).add(summary, 1);
+        totals(months, monthKey(timestamp)).add(summary, 1);
+        updateRecords(track, summary);
+    }
+
+    private void unapply(String track) {
+        TrackSummary summary = tracks.remove(track);
+        long timestamp = summary.getStartTimestamp();
+        subtract(days, dayKey(timestamp), summary);
+        subtract(weeks, weekKey(timestamp), summary);
+        subtract(months, monthKey(timestamp), summary);
+
+        boolean heldRecord = track.equals(longest);
+        for (String holder : fastest) {
+            heldRecord |= track.equals(holder);
+        }
+        if (heldRecord) {
+            // Records can't be subtracted, find the runner up among the remaining summaries.
+            longest = null;
+            for (int r = 0; r < fastest.length; r++) {
+                fastest[r] = null;
+            }
+            for (Map.Entry<String, TrackSummary> entry : tracks.entrySet()) {
+                updateRecords(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void updateRecords(String track, TrackSummary summary) {
+        for (int r = 0; r < fastest.length; r++) {
+            long millis = summary.getFastestMillis(r);
+            if (millis >= 0 && (fastest[r] == null || millis < tracks.get(fastest[r]).getFastestMillis(r))) {
+                fastest[r] = track;
+            }
+        }
+        if (longest == null || summary.getDistanceMeters() > tracks.get(longest).getDistanceMeters()) {
+            longest = track;
+        }
+    }
+
+    private void load() {
+        if (!logFile.exists()) {
+            backfill();
+            writeSnapshot();
+        } else if (!replay()) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Summarizes the tracks recorded before the store existed.
+     */
+    private void backfill() {
+        File[] gpxFiles = storageDir == null ? null : storageDir.listFiles((dir, name) -> name.endsWith(".gpx"));
+        if (gpxFiles == null) {
+            return;
+        }
+
+        for (File gpxFile : gpxFiles) {
+            String track = gpxFile.getName().substring(0, gpxFile.getName().lastIndexOf('.'));
+            try (InputStream is = new FileInputStream(gpxFile)) {
+                TrackSummary summary = DistanceUtil.gpx2Summary(is);
+                if (summary.getStartTimestamp() >= 0) {
+                    apply(track, summary);
+                }
+            } catch (IOException e) {
+                Log.e("RollupStore", String.format("Failed to summarize %s", gpxFile), e);
+            }
+        }
+        Log.i("RollupStore", String.format("Backfilled %d tracks from %s", tracks.size(), storageDir));
+    }
+
+    /**
+     * @return false if the log should be compacted, because it ends in a partial entry, e.g. from a crash while
+     * appending, or holds entries that no longer contribute.
+     */
+    private boolean replay() {
+        byte[] log;
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(logFile))) {
+            log = new byte[(int) logFile.length()];
+            dis.readFully(log);
+        } catch (IOException e) {
+            // Leave the log as is, rather than overwrite it with nothing.
+            Log.e("RollupStore", String.format("Failed to read %s", logFile), e);
+            return true;
+        }
+
+        int entries = 0;
+        int complete = 0;
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(log))) {
+            while (dis.available() > 0) {
+                byte entry = dis.readByte();
+                String track = dis.readUTF();
+                if (entry == ENTRY_ADD) {
+                    TrackSummary summary = TrackSummary.read(dis);
+                    if (!tracks.containsKey(track)) {
+                        apply(track, summary);
+                    }
+                } else if (entry == ENTRY_REMOVE) {
+                    if (tracks.containsKey(track)) {
+                        unapply(track);
+                    }
+                } else {
+                    throw new IOException(String.format("Unknown entry %d", entry));
+                }
+                entries++;
+                complete = log.length - dis.available();
+            }
+        } catch (IOException e) {
+            Log.w("RollupStore", String.format("Dropping %d bytes after the last complete entry of %s", log.length - complete, logFile), e);
+        }
+        return complete == log.length && entries == tracks.size();
+    }
+
+    /**
+     * Replaces the log with one add entry per track.
+     */
+    private void writeSnapshot() {
+        // Write aside and rename, so a crash while writing leaves the previous log.
+        File tmpFile = new File(logFile.getPath() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            for (Map.Entry<String, TrackSummary> entry : tracks.entrySet()) {
+                writeAdd(dos, entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            Log.e("RollupStore", String.format("Failed to write %s", tmpFile), e);
+            return;
+        }
+        if (!tmpFile.renameTo(logFile)) {
+            Log.e("RollupStore", String.format("Failed to replace %s", logFile));
+        }
+    }
+
+    private static void writeAdd(DataOutputStream dos, String track, TrackSummary summary) throws IOException {
+        dos.writeByte(ENTRY_ADD);
+        dos.writeUTF(track);
+        summary.write(dos);
+    }
+
+    private DataOutputStream append() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+    }
+
+    private static Totals get(Map<Integer, Totals> buckets, int key) {
+        Totals totals = buckets.get(key);
+        return totals == null ? EMPTY : totals;
+    }
+
+    private static Totals totals(Map<Integer, Totals> buckets, int key) {
+        Totals totals = buckets.get(key);
+        if (totals == null) {
+            totals = new Totals();
+            buckets.put(key, totals);
+        }
+        return totals;
+    }
+
+    private static void subtract(Map<Integer, Totals> buckets, int key, TrackSummary summary) {
+        Totals totals = buckets.get(key);
+        totals.add(summary, -1);
+        if (totals.tracks == 0) {
+            buckets.remove(key);
+        }
+    }
+
+    // Days since epoch in local time.
+    static int dayKey(long timestamp) {
+        return (int) ((timestamp + TimeZone.getDefault().getOffset(timestamp)) / MILLIS_PER_DAY);
+    }
+
+    // Day key of the Monday starting the week. Epoch day 0 was a Thursday.
+    static int weekKey(long timestamp) {
+        int day = dayKey(timestamp);
+        return day - (day + 3) % 7;
+    }
+
+    static int monthKey(long timestamp) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timestamp);
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+}
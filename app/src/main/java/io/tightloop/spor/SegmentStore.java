@@ -0,0 +1,105 @@
+package io.tightloop.spor;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segments marked by the user, with the best time for each, kept across sessions. Segment ids are their index in
+ * the store.
+ */
+public final class SegmentStore {
+    private static final class Segment {
+        private final LapDetector.Line start;
+        private final LapDetector.Line end;
+        private long bestMillis;
+
+        Segment(LapDetector.Line start, LapDetector.Line end, long bestMillis) {
+            this.start = start;
+            this.end = end;
+            this.bestMillis = bestMillis;
+        }
+    }
+
+    private final File file;
+    private final List<Segment> segments = new ArrayList<>();
+
+    public SegmentStore(File file) {
+        this.file = file;
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                segments.add(new Segment(LapDetector.Line.read(dis), LapDetector.Line.read(dis), dis.readLong()));
+            }
+        } catch (IOException e) {
+            Log.e("SegmentStore", String.format("Failed to read %s", file), e);
+        }
+    }
+
+    public int size() {
+        return segments.size();
+    }
+
+    public LapDetector.Line getStart(int segment) {
+        return segments.get(segment).start;
+    }
+
+    public LapDetector.Line getEnd(int segment) {
+        return segments.get(segment).end;
+    }
+
+    /**
+     * @return id of the new segment.
+     */
+    public int add(LapDetector.Line start, LapDetector.Line end) {
+        segments.add(new Segment(start, end, 0));
+        save();
+        return segments.size() - 1;
+    }
+
+    /**
+     * Records a time for the segment.
+     *
+     * @return best time of the segment, including this one.
+     */
+    public long recordTime(int segment, long millis) {
+        Segment s = segments.get(segment);
+        if (s.bestMillis == 0 || millis < s.bestMillis) {
+            s.bestMillis = millis;
+            save();
+        }
+        return s.bestMillis;
+    }
+
+    private void save() {
+        // Write aside and rename, so a crash while writing doesn't lose the segments already stored.
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            dos.writeInt(segments.size());
+            for (Segment segment : segments) {
+                segment.start.write(dos);
+                segment.end.write(dos);
+                dos.writeLong(segment.bestMillis);
+            }
+        } catch (IOException e) {
+            Log.e("SegmentStore", String.format("Failed to write %s", tmpFile), e);
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            Log.e("SegmentStore", String.format("Failed to replace %s", file));
+        }
+    }
+}
@@ -30,7 +30,18 @@ public class Spor extends Fragment {
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_spor, container, false);
         SporViewModel sporViewModel = new ViewModelProvider(requireActivity()).get(SporViewModel.class);
-        sporViewModel.getLocationData().observe(getViewLifecycleOwner(), locationData -> updateUILocationLabels(view, locationData.lat, locationData.lng, locationData.alt, locationData.distanceInCm, locationData.speedInMetersPerSecond, locationData.durationNano));
+        TelemetryBinder telemetryBinder = new TelemetryBinder(view);
+        sporViewModel.getLocationData().observe(getViewLifecycleOwner(), locationData -> telemetryBinder.bind(locationData.lat, locationData.lng, locationData.alt, locationData.distanceInCm, locationData.speedInMetersPerSecond, locationData.durationNano));
+
+        final ChartView elevationChart = view.findViewById(R.id.eleChart);
+        final ChartView speedChart = view.findViewById(R.id.velChart);
+        sporViewModel.getElevationChart().observe(getViewLifecycleOwner(), elevationChart::setBuffer);
+        sporViewModel.getSpeedChart().observe(getViewLifecycleOwner(), speedChart::setBuffer);
+
+        final TextView lapView = view.findViewById(R.id.laps);
+        sporViewModel.getLapData().observe(getViewLifecycleOwner(), lapData -> updateLapLabel(lapView, lapData));
+        view.findViewById(R.id.markLapGate).setOnClickListener(this::onMarkLapGateButtonClicked);
+        view.findViewById(R.id.markSegment).setOnClickListener(this::onMarkSegmentButtonClicked);
 
         final Button btn = view.findViewById(R.id.toggle);
         btn.setOnClickListener(this::onTrackingButtonClicked);
@@ -38,12 +49,15 @@ public class Spor extends Fragment {
 
         sporViewModel.getSporingState().observe(getViewLifecycleOwner(), sporing -> {
             GridLayout layout = view.findViewById(R.id.grid);
+            View charts = view.findViewById(R.id.charts);
             if (sporing) {
                 layout.setVisibility(View.VISIBLE);
+                charts.setVisibility(View.VISIBLE);
                 btn.setBackgroundColor(Color.rgb(228, 48, 33));
                 btn.setText(R.string.DeactivateButtonText);
             } else {
                 layout.setVisibility(View.INVISIBLE);
+                charts.setVisibility(View.INVISIBLE);
                 btn.setBackgroundColor(Color.rgb(36, 201, 36));
                 btn.setText(R.string.ActivateButtonText);
             }
@@ -52,19 +66,32 @@ public class Spor extends Fragment {
         return view;
     }
 
-    private void updateUILocationLabels(View view, double lat, double lng, double alt, long distanceInCm, double speedInMetersPerSecond, long durationNanos) {
-        TextView lngView = view.findViewById(R.id.lng);
-        TextView latView = view.findViewById(R.id.lat);
-        TextView altView = view.findViewById(R.id.alt);
-        TextView distanceView = view.findViewById(R.id.dst);
-        TextView velocityView = view.findViewById(R.id.vel);
-        TextView durationView = view.findViewById(R.id.dur);
-        lngView.setText(Double.isNaN(lng) ? "-" : String.format(Locale.US, "%.6f", lng));
-        latView.setText(Double.isNaN(lat) ? "-" : String.format(Locale.US, "%.6f", lat));
-        altView.setText(Double.isNaN(alt) ? "-" : String.format(Locale.US, "%.0fm", alt));
-        distanceView.setText(String.format(Locale.US, "%.0fm", distanceInCm / 100.));
-        velocityView.setText(String.format(Locale.US, "%.1fkm/h", 3.6 * speedInMetersPerSecond));
-        durationView.setText(String.format(Locale.US, "%dh%dm", durationNanos / TimeUnit.HOURS.toNanos(1), (durationNanos % TimeUnit.HOURS.toNanos(1)) / TimeUnit.MINUTES.toNanos(1)));
+    private void updateLapLabel(TextView lapView, SporViewModel.LapData lapData) {
+        StringBuilder text = new StringBuilder();
+        if (lapData.laps > 0) {
+            text.append(getString(R.string.LapSummary, lapData.laps, formatLapTime(lapData.lastLapMillis), formatLapTime(lapData.bestLapMillis)));
+        }
+        if (lapData.lastSegment >= 0) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(getString(R.string.SegmentSummary, lapData.lastSegment + 1, formatLapTime(lapData.lastSegmentMillis), formatLapTime(lapData.bestSegmentMillis)));
+        }
+        lapView.setText(text);
+        lapView.setVisibility(text.length() > 0 ? View.VISIBLE : View.GONE);
+    }
+
+    private static String formatLapTime(long millis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        return String.format(Locale.US, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    public void onMarkLapGateButtonClicked(View view) {
+        ((MainActivity) requireActivity()).markLapGate();
+    }
+
+    public void onMarkSegmentButtonClicked(View view) {
+        ((MainActivity) requireActivity()).markSegment();
     }
 
     public void onTrackingButtonClicked(View view) {
@@ -0,0 +1,118 @@
+package io.tightloop.spor;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public final class SporExporter {
+    // Tracks converted ahead of the one currently written, per worker thread.
+    private static final int TRACKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private SporExporter() {
+    }
+
+    /**
+     * Exports every track in storageDir to a single zip archive. Tracks are converted in parallel, but written to
+     * the archive in name (i.e. chronological) order, with at most a small window of tracks held in memory.
+     *
+     * @return number of tracks exported.
+     */
+    public static int exportAll(File storageDir, File zipFile) throws IOException {
+        return exportAll(storageDir, zipFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    static int exportAll(File storageDir, File zipFile, int parallelism) throws IOException {
+        List<File> tracks = listTracks(storageDir);
+        int window = parallelism * TRACKS_IN_FLIGHT_PER_THREAD;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>(window);
+
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+            int submitted = 0;
+            for (File track : tracks) {
+                while (submitted < tracks.size() && pending.size() < window) {
+                    File next = tracks.get(submitted++);
+                    pending.add(pool.submit(() -> toGpx(next)));
+                }
+
+                byte[] gpx = await(pending.poll());
+                zos.putNextEntry(new ZipEntry(String.format("%s.gpx", baseName(track))));
+                zos.write(gpx);
+                zos.closeEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Don't leave a partial archive behind.
+            if (zipFile.exists() && !zipFile.delete()) {
+                Log.w("SporExporter", String.format("Failed to delete %s", zipFile));
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return tracks.size();
+    }
+
+    private static List<File> listTracks(File storageDir) {
+        // Keyed on base name; a finished .gpx takes precedence over a left-over .spor of the same recording.
+        Map<String, File> tracks = new TreeMap<>();
+        for (File file : Objects.requireNonNull(storageDir.listFiles((dir, name) -> Objects.equals(storageDir, dir) && (name.endsWith(".gpx") || name.endsWith(".spor"))))) {
+            String name = baseName(file);
+            if (!tracks.containsKey(name) || file.getName().endsWith(".gpx")) {
+                tracks.put(name, file);
+            }
+        }
+        return new ArrayList<>(tracks.values());
+    }
+
+    private static byte[] toGpx(File track) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int) Math.min(track.length(), Integer.MAX_VALUE));
+        try (InputStream is = new FileInputStream(track)) {
+            if (track.getName().endsWith(".spor")) {
+                DistanceUtil.spor2Gpx(is, bos);
+            } else {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    bos.write(buffer, 0, read);
+                }
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] await(ForkJoinTask<byte[]> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static String baseName(File file) {
+        return file.getName().substring(0, file.getName().lastIndexOf('.'));
+    }
+}
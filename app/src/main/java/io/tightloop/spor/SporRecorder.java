@@ -15,15 +15,29 @@ import java.util.Locale;
 import java.util.Objects;
 
 public final class SporRecorder {
-    private static final SimpleDateFormat DATE_FMT = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+    // Event records are stored as data points with a NaN latitude, the event type in place of longitude and the
+    // event value (lap or segment number) in place of altitude.
+    public static final int EVENT_LAP = 1;
+    public static final int EVENT_SEGMENT = 2;
+
+    private static final ThreadLocal<SimpleDateFormat> DATE_FMT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+        }
+    };
 
     private static class ActiveRecording implements AutoCloseable {
         private final DataOutputStream outputStream;
         private final File gpxFile;
         private final File sporFile;
+        private final String name;
+        private final RollupStore rollups;
 
-        ActiveRecording(File storageDir) {
-            String dateString = DATE_FMT.format(new Date());
+        ActiveRecording(File storageDir, RollupStore rollups) {
+            String dateString = DATE_FMT.get().format(new Date());
+            this.name = dateString;
+            this.rollups = rollups;
             gpxFile = new File(storageDir, String.format("%s.gpx", dateString));
             sporFile = new File(storageDir, String.format("%s.spor", dateString));
 
@@ -37,7 +51,7 @@ public final class SporRecorder {
         @Override
         public void close() throws IOException {
             outputStream.close();
-            DistanceUtil.spor2Gpx(sporFile, gpxFile);
+            rollups.add(name, DistanceUtil.spor2Gpx(sporFile, gpxFile));
             if (!sporFile.delete()) {
                 Log.w("SporRecorder", String.format("Failed to delete %s", sporFile));
             }
@@ -46,9 +60,11 @@ public final class SporRecorder {
 
     private final List<ActiveRecording> activeRecordings;
     private final File storageDir;
+    private final RollupStore rollups;
 
-    public SporRecorder(File storageDir) {
+    public SporRecorder(File storageDir, RollupStore rollups) {
         this.storageDir = storageDir;
+        this.rollups = rollups;
         this.activeRecordings = new ArrayList<>(1);
     }
 
@@ -58,7 +74,7 @@ public final class SporRecorder {
             throw new RuntimeException("Already recording.");
         }
 
-        activeRecordings.add(new ActiveRecording(storageDir));
+        activeRecordings.add(new ActiveRecording(storageDir, rollups));
     }
 
     public boolean isRecording() {
@@ -78,6 +94,10 @@ public final class SporRecorder {
         }
     }
 
+    public void recordEvent(long timestamp, int type, int value) {
+        recordDataPoint(timestamp, Double.NaN, type, value);
+    }
+
     public void stopRecording() {
         try {
             activeRecordings.remove(0).close();
@@ -86,13 +106,13 @@ public final class SporRecorder {
         }
     }
 
-    public static void recoverRecordings(File storageDir) {
+    public static void recoverRecordings(File storageDir, RollupStore rollups) {
         // Attempt to recover any .spor files
         for (File sporFile : Objects.requireNonNull(storageDir.listFiles((dir, name) -> Objects.equals(storageDir, dir) && name.endsWith(".spor")))) {
             try {
                 String fileName = sporFile.getName().substring(0, sporFile.getName().lastIndexOf('.'));
                 File gpxFile = new File(storageDir, String.format("%s.gpx", fileName));
-                DistanceUtil.spor2Gpx(sporFile, gpxFile);
+                rollups.add(fileName, DistanceUtil.spor2Gpx(sporFile, gpxFile));
                 Log.i("SporRecorder", String.format("Recovered %s", gpxFile));
             } catch (IOException e) {
                 Log.e("SporRecorder", String.format("Failed to recover %s", sporFile), e);
@@ -103,4 +123,17 @@ public final class SporRecorder {
             }
         }
     }
+
+    /**
+     * @return false if the recording could not be deleted.
+     */
+    public static boolean deleteRecording(File storageDir, String name, RollupStore rollups) {
+        File gpxFile = new File(storageDir, String.format("%s.gpx", name));
+        if (!gpxFile.delete()) {
+            Log.w("SporRecorder", String.format("Failed to delete %s", gpxFile));
+            return false;
+        }
+        rollups.remove(name);
+        return true;
+    }
 }
@@ -23,10 +23,12 @@ import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
 import androidx.core.app.ActivityCompat;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
-public class SporService extends Service implements LocationListener {
+public class SporService extends Service implements LocationListener, LapDetector.Listener {
     private static final int NOTIFICATION_ID = 1725186441;
+    private static final int CHART_POINTS = 300;
 
     // Global state https://stackoverflow.com/questions/17146822/when-is-a-started-and-bound-service-destroyed
     private static boolean running = false;
@@ -37,11 +39,24 @@ public class SporService extends Service implements LocationListener {
     public double lat = Double.NaN;
     public double lng = Double.NaN;
     public long distanceInCentimeters = 0;
+    public final ChartBuffer elevationChart = new ChartBuffer(CHART_POINTS);
+    public final ChartBuffer speedChart = new ChartBuffer(CHART_POINTS);
     private long startTimestamp = 0;
     private long elapsedNanosLastUpdate = 0;
     private long startNanos = 0;
     private LocationManager locationManager;
     private SporRecorder recorder;
+    private LapDetector lapDetector;
+    private SegmentStore segmentStore;
+    private LapDetector.Line segmentStart;
+    // Incremented on every lap and segment pass, so observers can tell when the statistics below changed.
+    public int lapEvents = 0;
+    public int laps = 0;
+    public long lastLapMillis = 0;
+    public long bestLapMillis = 0;
+    public int lastSegment = -1;
+    public long lastSegmentMillis = 0;
+    public long bestSegmentMillis = 0;
 
     public long getElapsedNanos() {
         return startNanos > 0 ? SystemClock.elapsedRealtimeNanos() - startNanos : 0;
@@ -70,7 +85,8 @@ public class SporService extends Service implements LocationListener {
             startService(new Intent(this, SporService.class));
         }
 
-        recorder = new SporRecorder(getApplicationContext().getExternalFilesDir(null));
+        recorder = new SporRecorder(getApplicationContext().getExternalFilesDir(null), RollupStore.getInstance(this));
+        segmentStore = new SegmentStore(new File(getFilesDir(), "segments"));
         locationManager = (LocationManager) getApplicationContext().getSystemService(Context.LOCATION_SERVICE);
         activate();
     }
@@ -84,6 +100,10 @@ public class SporService extends Service implements LocationListener {
 
         if (!recorder.isRecording()) {
             recorder.startRecording();
+            lapDetector = new LapDetector(this);
+            for (int segment = 0; segment < segmentStore.size(); segment++) {
+                lapDetector.addSegment(segment, segmentStore.getStart(segment), segmentStore.getEnd(segment));
+            }
             locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, TimeUnit.SECONDS.toMillis(5), 5, this);
             startNanos = SystemClock.elapsedRealtimeNanos();
             startTimestamp = System.currentTimeMillis();
@@ -132,6 +152,12 @@ public class SporService extends Service implements LocationListener {
         running = false;
         lat = lng = alt = Double.NaN;
         distanceInCentimeters = startNanos = startTimestamp = elapsedNanosLastUpdate = 0;
+        lapEvents = laps = 0;
+        lastLapMillis = bestLapMillis = lastSegmentMillis = bestSegmentMillis = 0;
+        lastSegment = -1;
+        segmentStart = null;
+        elevationChart.clear();
+        speedChart.clear();
     }
 
     @Override
@@ -145,19 +171,86 @@ public class SporService extends Service implements LocationListener {
         double lng = location.getLongitude();
         double alt = location.getAltitude();
 
+        long elapsedNanos = location.getElapsedRealtimeNanos() - startNanos;
+        float elapsedSeconds = elapsedNanos / 1e9f;
+
         if (!Double.isNaN(this.lat) && !Double.isNaN(this.lng) && !Double.isNaN(this.alt)) {
-            distanceInCentimeters += Math.round(DistanceUtil.distanceInMeters(this.lat, lat, this.lng, lng, this.alt, alt) * 100);
+            double meters = DistanceUtil.distanceInMeters(this.lat, lat, this.lng, lng, this.alt, alt);
+            distanceInCentimeters += Math.round(meters * 100);
+
+            double seconds = (elapsedNanos - elapsedNanosLastUpdate) / 1e9;
+            if (seconds > 0) {
+                speedChart.add(elapsedSeconds, (float) (3.6 * meters / seconds));
+            }
         }
+        elevationChart.add(elapsedSeconds, (float) alt);
 
         this.lat = lat;
         this.lng = lng;
         this.alt = alt;
-        this.elapsedNanosLastUpdate = location.getElapsedRealtimeNanos() - startNanos;
+        this.elapsedNanosLastUpdate = elapsedNanos;
         long timestamp = startTimestamp + TimeUnit.NANOSECONDS.toMillis(elapsedNanosLastUpdate);
 
         if (recorder.isRecording()) {
             recorder.recordDataPoint(timestamp, lat, lng, alt);
+            lapDetector.onFix(timestamp, lat, lng);
+        }
+    }
+
+    /**
+     * Moves the lap gate to the current position, across the direction of travel.
+     *
+     * @return string resource describing the outcome.
+     */
+    public int markLapGate() {
+        LapDetector.Line line = lapDetector == null ? null : lapDetector.lineHere();
+        if (line == null) {
+            return R.string.MarkNeedsHeading;
+        }
+        lapDetector.setLapGate(line);
+        return R.string.LapGateMarked;
+    }
+
+    /**
+     * Marks the start of a segment at the current position, or if a start is already marked, the end. Completed
+     * segments are stored and timed whenever they are passed, in this and later sessions.
+     *
+     * @return string resource describing the outcome.
+     */
+    public int markSegment() {
+        LapDetector.Line line = lapDetector == null ? null : lapDetector.lineHere();
+        if (line == null) {
+            return R.string.MarkNeedsHeading;
+        }
+        if (segmentStart == null) {
+            segmentStart = line;
+            return R.string.SegmentStartMarked;
         }
+
+        int segment = segmentStore.add(segmentStart, line);
+        lapDetector.addSegment(segment, segmentStart, line);
+        segmentStart = null;
+        return R.string.SegmentMarked;
+    }
+
+    @Override
+    public void onLap(long timestamp, int lap, long lapMillis) {
+        lapEvents++;
+        laps = lap;
+        lastLapMillis = lapMillis;
+        if (bestLapMillis == 0 || lapMillis < bestLapMillis) {
+            bestLapMillis = lapMillis;
+        }
+        recorder.recordEvent(timestamp, SporRecorder.EVENT_LAP, lap);
+    }
+
+    @Override
+    public void onSegment(long timestamp, int segment, long segmentMillis) {
+        lapEvents++;
+        lastSegment = segment;
+        lastSegmentMillis = segmentMillis;
+        bestSegmentMillis = segmentStore.recordTime(segment, segmentMillis);
+        recorder.recordEvent(timestamp, SporRecorder.EVENT_SEGMENT, segment);
     }
 
     @Override
@@ -23,8 +23,31 @@ public class SporViewModel extends ViewModel {
         }
     }
 
+    public static class LapData {
+        final int events;
+        final int laps;
+        final long lastLapMillis;
+        final long bestLapMillis;
+        final int lastSegment;
+        final long lastSegmentMillis;
+        final long bestSegmentMillis;
+
+        LapData(int events, int laps, long lastLapMillis, long bestLapMillis, int lastSegment, long lastSegmentMillis, long bestSegmentMillis) {
+            this.events = events;
+            this.laps = laps;
+            this.lastLapMillis = lastLapMillis;
+            this.bestLapMillis = bestLapMillis;
+            this.lastSegment = lastSegment;
+            this.lastSegmentMillis = lastSegmentMillis;
+            this.bestSegmentMillis = bestSegmentMillis;
+        }
+    }
+
     private final MutableLiveData<LocationData> locationData = new MutableLiveData<>();
+    private final MutableLiveData<LapData> lapData = new MutableLiveData<>();
     private final MutableLiveData<Boolean> sporing = new MutableLiveData<>();
+    private final MutableLiveData<ChartBuffer> elevationChart = new MutableLiveData<>();
+    private final MutableLiveData<ChartBuffer> speedChart = new MutableLiveData<>();
 
     public MutableLiveData<LocationData> getLocationData() {
         return locationData;
@@ -34,6 +57,14 @@ public class SporViewModel extends ViewModel {
         this.locationData.setValue(locationData);
     }
 
+    public MutableLiveData<LapData> getLapData() {
+        return lapData;
+    }
+
+    public void setLapData(LapData lapData) {
+        this.lapData.setValue(lapData);
+    }
+
     public MutableLiveData<Boolean> getSporingState() {
         return sporing;
     }
@@ -41,4 +72,17 @@ public class SporViewModel extends ViewModel {
     public void setSporingState(boolean sporingState) {
         this.sporing.setValue(sporingState);
     }
+
+    public MutableLiveData<ChartBuffer> getElevationChart() {
+        return elevationChart;
+    }
+
+    public MutableLiveData<ChartBuffer> getSpeedChart() {
+        return speedChart;
+    }
+
+    public void setCharts(ChartBuffer elevationChart, ChartBuffer speedChart) {
+        this.elevationChart.setValue(elevationChart);
+        this.speedChart.setValue(speedChart);
+    }
 }
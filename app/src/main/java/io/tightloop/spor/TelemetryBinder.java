@@ -0,0 +1,189 @@
+package io.tightloop.spor;
+
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds location data to the telemetry labels of the Spor screen. View references are looked up once, values are
+ * formatted into reused buffers, and labels whose text is unchanged are not touched, so an update does not allocate.
+ * Output matches the String.format(Locale.US, ...) patterns previously used for each label.
+ */
+final class TelemetryBinder {
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    private static final long NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Where a label's text is shown, TextView.setText outside of tests.
+     */
+    interface Target {
+        void setText(char[] text, int start, int length);
+    }
+
+    /**
+     * Label with two buffers, one is displayed by the view while the next value is formatted into the other.
+     */
+    static final class Label {
+        private final Target view;
+        private char[] shown = new char[32];
+        private int shownLength = -1;
+        private char[] next = new char[32];
+
+        Label(Target view) {
+            this.view = view;
+        }
+
+        /**
+         * Shows the first length chars of next(), unless they are what is shown already.
+         */
+        void update(int length) {
+            if (length == shownLength && equals(shown, next, length)) {
+                return;
+            }
+
+            char[] swap = shown;
+            shown = next;
+            shownLength = length;
+            next = swap;
+            view.setText(shown, 0, length);
+        }
+
+        char[] next() {
+            return next;
+        }
+
+        private static boolean equals(char[] a, char[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Label lng;
+    private final Label lat;
+    private final Label alt;
+    private final Label distance;
+    private final Label velocity;
+    private final Label duration;
+
+    TelemetryBinder(View view) {
+        this(target(view, R.id.lng), target(view, R.id.lat), target(view, R.id.alt), target(view, R.id.dst),
+                target(view, R.id.vel), target(view, R.id.dur));
+    }
+
+    TelemetryBinder(Target lng, Target lat, Target alt, Target distance, Target velocity, Target duration) {
+        this.lng = new Label(lng);
+        this.lat = new Label(lat);
+        this.alt = new Label(alt);
+        this.distance = new Label(distance);
+        this.velocity = new Label(velocity);
+        this.duration = new Label(duration);
+    }
+
+    private static Target target(View view, int id) {
+        TextView textView = view.findViewById(id);
+        return textView::setText;
+    }
+
+    void bind(double lat, double lng, double alt, long distanceInCm, double speedInMetersPerSecond, long durationNanos) {
+        this.lng.update(formatCoordinate(this.lng.next(), lng));
+        this.lat.update(formatCoordinate(this.lat.next(), lat));
+        this.alt.update(formatAltitude(this.alt.next(), alt));
+        this.distance.update(formatDistance(this.distance.next(), distanceInCm));
+        this.velocity.update(formatVelocity(this.velocity.next(), speedInMetersPerSecond));
+        this.duration.update(formatDuration(this.duration.next(), durationNanos));
+    }
+
+    // Same as Double.isNaN(value) ? "-" : String.format(Locale.US, "%.6f", value)
+    static int formatCoordinate(char[] buffer, double value) {
+        return Double.isNaN(value) ? append(buffer, 0, "-") : appendFixed(buffer, 0, value, 6);
+    }
+
+    // Same as Double.isNaN(value) ? "-" : String.format(Locale.US, "%.0fm", value)
+    static int formatAltitude(char[] buffer, double value) {
+        return Double.isNaN(value) ? append(buffer, 0, "-") : append(buffer, appendFixed(buffer, 0, value, 0), "m");
+    }
+
+    // Same as String.format(Locale.US, "%.0fm", distanceInCm / 100.)
+    static int formatDistance(char[] buffer, long distanceInCm) {
+        return append(buffer, appendFixed(buffer, 0, distanceInCm / 100., 0), "m");
+    }
+
+    // Same as String.format(Locale.US, "%.1fkm/h", 3.6 * speedInMetersPerSecond)
+    static int formatVelocity(char[] buffer, double speedInMetersPerSecond) {
+        return append(buffer, appendFixed(buffer, 0, 3.6 * speedInMetersPerSecond, 1), "km/h");
+    }
+
+    // Same as String.format(Locale.US, "%dh%dm", hours, minutes)
+    static int formatDuration(char[] buffer, long durationNanos) {
+        int pos = appendLong(buffer, 0, durationNanos / NANOS_PER_HOUR);
+        pos = append(buffer, pos, "h");
+        pos = appendLong(buffer, pos, (durationNanos % NANOS_PER_HOUR) / NANOS_PER_MINUTE);
+        return append(buffer, pos, "m");
+    }
+
+    /**
+     * Appends value with the given number of decimals, rounding half up like java.util.Formatter does. Values are
+     * expected to be finite and small enough for value * 10^decimals to fit a long.
+     */
+    static int appendFixed(char[] buffer, int pos, double value, int decimals) {
+        // Formatter keeps the sign of negative values rounding to zero, e.g. "-0.0".
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+
+        // Formatter rounds the shortest decimal representation of value, not value * scale, which may land on the
+        // other side of a tie. For the magnitudes we format, the representation is at or above the tie exactly when
+        // value is at or above the double nearest to it, so nudge the estimate against the neighbouring ties.
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(value * scale);
+        if (value < (2 * scaled - 1) / (2. * scale)) {
+            scaled--;
+        } else if (value >= (2 * scaled + 1) / (2. * scale)) {
+            scaled++;
+        }
+        pos = appendLong(buffer, pos, scaled / scale);
+        if (decimals > 0) {
+            buffer[pos++] = '.';
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                buffer[pos++] = (char) ('0' + fraction / digit % 10);
+            }
+        }
+        return pos;
+    }
+
+    static int appendLong(char[] buffer, int pos, long value) {
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+
+        int start = pos;
+        do {
+            buffer[pos++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        // Digits were written least significant first.
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+        return pos;
+    }
+
+    static int append(char[] buffer, int pos, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[pos++] = text.charAt(i);
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,124 @@
+package io.tightloop.spor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Totals and best efforts of a single track, accumulated point by point while the track is converted.
+ */
+public final class TrackSummary {
+    // Distances we keep fastest efforts for.
+    public static final int[] RECORD_METERS = {1_000, 5_000, 10_000};
+
+    private long startTimestamp = -1;
+    private long endTimestamp = -1;
+    private double distanceMeters;
+    private double elevationGainMeters;
+    private final long[] fastestMillis = new long[RECORD_METERS.length];
+
+    // Cumulative distance and time of every point, for the sliding window of each record distance.
+    private double[] distances = new double[64];
+    private long[] timestamps = new long[64];
+    private final int[] windowStarts = new int[RECORD_METERS.length];
+    private int points;
+    private double lat;
+    private double lng;
+    private double alt;
+
+    TrackSummary() {
+        Arrays.fill(fastestMillis, -1);
+    }
+
+    void add(long timestamp, double lat, double lng, double alt) {
+        if (points > 0) {
+            distanceMeters += DistanceUtil.distanceInMeters(this.lat, lat, this.lng, lng, this.alt, alt);
+            elevationGainMeters += Math.max(0, alt - this.alt);
+        } else {
+            startTimestamp = timestamp;
+        }
+        endTimestamp = timestamp;
+        this.lat = lat;
+        this.lng = lng;
+        this.alt = alt;
+
+        if (points == distances.length) {
+            distances = Arrays.copyOf(distances, points * 2);
+            timestamps = Arrays.copyOf(timestamps, points * 2);
+        }
+        distances[points] = distanceMeters;
+        timestamps[points] = timestamp;
+
+        for (int r = 0; r < RECORD_METERS.length; r++) {
+            // Shortest window ending at this point that still covers the record distance.
+            int start = windowStarts[r];
+            while (start + 1 < points && distanceMeters - distances[start + 1] >= RECORD_METERS[r]) {
+                start++;
+            }
+            windowStarts[r] = start;
+
+            if (distanceMeters - distances[start] >= RECORD_METERS[r]) {
+                long millis = timestamp - timestamps[start];
+                if (fastestMillis[r] < 0 || millis < fastestMillis[r]) {
+                    fastestMillis[r] = millis;
+                }
+            }
+        }
+        points++;
+    }
+
+    /**
+     * Drops the per point buffers once the last point has been added, only the summary is kept.
+     */
+    void finish() {
+        distances = null;
+        timestamps = null;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getDurationMillis() {
+        return startTimestamp < 0 ? 0 : endTimestamp - startTimestamp;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public double getElevationGainMeters() {
+        return elevationGainMeters;
+    }
+
+    /**
+     * @return fastest time covering RECORD_METERS[record], or -1 if the track is shorter than that.
+     */
+    public long getFastestMillis(int record) {
+        return fastestMillis[record];
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(startTimestamp);
+        out.writeLong(endTimestamp);
+        out.writeDouble(distanceMeters);
+        out.writeDouble(elevationGainMeters);
+        for (long millis : fastestMillis) {
+            out.writeLong(millis);
+        }
+    }
+
+    static TrackSummary read(DataInput in) throws IOException {
+        TrackSummary summary = new TrackSummary();
+        summary.startTimestamp = in.readLong();
+        summary.endTimestamp = in.readLong();
+        summary.distanceMeters = in.readDouble();
+        summary.elevationGainMeters = in.readDouble();
+        for (int r = 0; r < summary.fastestMillis.length; r++) {
+            summary.fastestMillis[r] = in.readLong();
+        }
+        summary.finish();
+        return summary;
+    }
+}
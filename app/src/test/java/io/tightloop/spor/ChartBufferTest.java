@@ -0,0 +1,165 @@
+package io.tightloop.spor;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChartBufferTest {
+    private static final int CAPACITY = 300;
+
+    @Test
+    public void keepsEveryPointUntilFull() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        int points = CAPACITY - 2;
+        for (int i = 0; i < points; i++) {
+            buffer.add(i, i % 7);
+        }
+
+        // Buckets of a single point pick it.
+        assertEquals(points, buffer.size());
+        for (int i = 0; i < points; i++) {
+            assertEquals(i, buffer.getX(i), 0);
+            assertEquals(i % 7, buffer.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void neverExceedsCapacity() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 100_000; i++) {
+            buffer.add(i, (float) Math.sin(i / 100.));
+            assertTrue(buffer.size() <= CAPACITY);
+        }
+    }
+
+    @Test
+    public void pointsAreInOrder() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 7_200; i++) {
+            buffer.add(i, (float) Math.sin(i / 50.));
+        }
+
+        for (int i = 1; i < buffer.size(); i++) {
+            assertTrue(buffer.getX(i) >= buffer.getX(i - 1));
+        }
+    }
+
+    @Test
+    public void staysUniformOverLongSession() {
+        // Ten hours of fixes every five seconds.
+        int fixesPerHour = 720;
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 10 * fixesPerHour; i++) {
+            buffer.add(i, (float) Math.sin(i / 50.));
+        }
+
+        int[] perHour = new int[10];
+        for (int i = 0; i < buffer.size(); i++) {
+            perHour[(int) buffer.getX(i) / fixesPerHour]++;
+        }
+        int expected = buffer.size() / 10;
+        for (int hour = 0; hour < perHour.length; hour++) {
+            assertTrue(String.format("Hour %d has %d points, expected about %d", hour, perHour[hour], expected),
+                    Math.abs(perHour[hour] - expected) <= expected / 4);
+        }
+    }
+
+    @Test
+    public void keepsSpikes() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 7_200; i++) {
+            buffer.add(i, i == 1_000 ? 500 : i == 5_000 ? -500 : 0);
+        }
+
+        boolean high = false;
+        boolean low = false;
+        for (int i = 0; i < buffer.size(); i++) {
+            high |= buffer.getX(i) == 1_000 && buffer.getY(i) == 500;
+            low |= buffer.getX(i) == 5_000 && buffer.getY(i) == -500;
+        }
+        assertTrue(high);
+        assertTrue(low);
+    }
+
+    @Test
+    public void includesPointsOfUnfinishedBucket() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 1_001; i++) {
+            buffer.add(i, i);
+        }
+
+        assertEquals(1_000, buffer.getX(buffer.size() - 1), 0);
+    }
+
+    @Test
+    public void clearStartsOver() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        for (int i = 0; i < 10_000; i++) {
+            buffer.add(i, i);
+        }
+        buffer.clear();
+        buffer.add(1, 2);
+
+        assertEquals(1, buffer.size());
+        assertEquals(1, buffer.getX(0), 0);
+        assertEquals(2, buffer.getY(0), 0);
+    }
+
+    @Test
+    public void picksLargestTriangle() {
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        // A zigzag with one step per point, downsampled until each bucket covers 32 points.
+        for (int i = 0; i < 32 * CAPACITY; i++) {
+            buffer.add(i, i % 2 == 0 ? 0 : (i % 64 == 33 ? 10 : 1));
+        }
+
+        // The peaks stand out most against the previous pick and the average of the next bucket.
+        int peaks = 0;
+        for (int i = 1; i < buffer.size() - 2; i++) {
+            if (buffer.getY(i) == 10) {
+                peaks++;
+            }
+        }
+        assertTrue(String.format("%d of %d buckets picked the peak", peaks, buffer.size()), peaks >= buffer.size() / 2 - 2);
+    }
+
+    @Test
+    public void picksFromRawPointsOfEachBucket() {
+        // After the first merge each bucket covers two raw points, starting at the first. Buckets closed since then
+        // pick the raw point forming the largest triangle with the previous pick and the average of the next bucket.
+        ChartBuffer buffer = new ChartBuffer(CAPACITY);
+        int points = 2 * (CAPACITY - 10);
+        float[] y = new float[points];
+        Random random = new Random(42);
+        for (int i = 0; i < points; i++) {
+            y[i] = random.nextFloat();
+            buffer.add(i, y[i]);
+        }
+
+        int firstAfterMerge = (CAPACITY - 2) / 2 + 1;
+        for (int bucket = firstAfterMerge; bucket < buffer.size() - 2; bucket++) {
+            float ax = buffer.getX(bucket - 1);
+            float ay = buffer.getY(bucket - 1);
+            float cx = 2 * bucket + 2.5f;
+            float cy = (y[2 * bucket + 2] + y[2 * bucket + 3]) / 2;
+            int expected = 2 * bucket;
+            float largestArea = -1;
+            for (int i = 2 * bucket; i < 2 * bucket + 2; i++) {
+                float area = Math.abs((ax - cx) * (y[i] - ay) - (ax - i) * (cy - ay));
+                if (area > largestArea) {
+                    expected = i;
+                    largestArea = area;
+                }
+            }
+            assertEquals("Bucket " + bucket, expected, buffer.getX(bucket), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooSmallCapacity() {
+        new ChartBuffer(4);
+    }
+}
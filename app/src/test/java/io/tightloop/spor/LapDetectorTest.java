@@ -0,0 +1,168 @@
+package io.tightloop.spor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LapDetectorTest {
+    private static final int FIXES_PER_LAP = 120;
+    private static final long FIX_MILLIS = 5_000;
+    private static final long LAP_MILLIS = FIXES_PER_LAP * FIX_MILLIS;
+
+    private final List<Long> laps = new ArrayList<>();
+    private final List<Long> segments = new ArrayList<>();
+    private final LapDetector detector = new LapDetector(new LapDetector.Listener() {
+        @Override
+        public void onLap(long timestamp, int lap, long lapMillis) {
+            assertEquals(laps.size() + 1, lap);
+            laps.add(lapMillis);
+        }
+
+        @Override
+        public void onSegment(long timestamp, int segment, long segmentMillis) {
+            assertEquals(7, segment);
+            segments.add(segmentMillis);
+        }
+    });
+
+    @Test
+    public void countsLapsAtStartPoint() {
+        // Including high longitudes east and west, and near the pole.
+        double[][] centers = {{59.9, 10.7}, {-33.9, 151.2}, {40.7, -74.0}, {64.1, 179.9}, {-54.8, -68.3}, {78.2, 15.6}};
+        for (double[] center : centers) {
+            laps.clear();
+            LapDetector detector = new LapDetector(new LapDetector.Listener() {
+                @Override
+                public void onLap(long timestamp, int lap, long lapMillis) {
+                    laps.add(lapMillis);
+                }
+
+                @Override
+                public void onSegment(long timestamp, int segment, long segmentMillis) {
+                }
+            });
+            ride(detector, center[0], center[1], 3 * FIXES_PER_LAP + 2, 0);
+
+            assertEquals(String.format("Laps at %f, %f", center[0], center[1]), 3, laps.size());
+            for (long lapMillis : laps) {
+                assertEquals(LAP_MILLIS, lapMillis, FIX_MILLIS);
+            }
+        }
+    }
+
+    @Test
+    public void noiseAroundGateCountsOnce() {
+        // Jitter of several meters around each fix, at a slow pace.
+        ride(detector, 45.0, 170.0, 2 * FIXES_PER_LAP + 2, 10);
+
+        assertEquals(2, laps.size());
+    }
+
+    @Test
+    public void standingAtStartCountsNoLaps() {
+        // Walk north from the start, then stand at the start line with GPS jitter.
+        walkNorth(59.9, 10.7, 10, 5);
+        stand(59.9, 10.7, 10, 60, 8);
+
+        assertEquals(0, laps.size());
+    }
+
+    @Test
+    public void standingAtStartAfterComingBackCountsNoLaps() {
+        // Far enough away to re-arm the start line, then back to it from the far side.
+        walkNorth(59.9, 10.7, 40, 5);
+        stand(59.9, 10.7, 40, 60, 8);
+
+        assertEquals(0, laps.size());
+    }
+
+    @Test
+    public void standingAtMarkedGateCountsNoLaps() {
+        walkNorth(59.9, 10.7, 20, 5);
+        detector.setLapGate(detector.lineHere());
+        stand(59.9 + 95 / 111_320., 10.7, 20, 60, 8);
+
+        assertEquals(0, laps.size());
+    }
+
+    @Test
+    public void timesSegmentsBetweenLines() {
+        LapDetector.Line start = null;
+        for (int fix = 0; fix < 3 * FIXES_PER_LAP + 2; fix++) {
+            fix(detector, 59.9, 10.7, fix, 0, null);
+            if (fix == 10) {
+                start = detector.lineHere();
+            } else if (fix == 40) {
+                detector.addSegment(7, start, detector.lineHere());
+            }
+        }
+
+        // Segment added during the first lap, passed in the next two.
+        assertEquals(2, segments.size());
+        for (long segmentMillis : segments) {
+            assertEquals(30 * FIX_MILLIS, segmentMillis, FIX_MILLIS / 2);
+        }
+    }
+
+    @Test
+    public void lapGateReplacesStartPoint() {
+        for (int fix = 0; fix < 2 * FIXES_PER_LAP + 32; fix++) {
+            fix(detector, 59.9, 10.7, fix, 0, null);
+            if (fix == 30) {
+                detector.setLapGate(detector.lineHere());
+            }
+        }
+
+        assertEquals(2, laps.size());
+        for (long lapMillis : laps) {
+            assertEquals(LAP_MILLIS, lapMillis, FIX_MILLIS);
+        }
+    }
+
+    @Test
+    public void noLineBeforeFirstStep() {
+        assertTrue(detector.lineHere() == null);
+        fix(detector, 59.9, 10.7, 0, 0, null);
+        assertTrue(detector.lineHere() == null);
+        fix(detector, 59.9, 10.7, 1, 0, null);
+        assertTrue(detector.lineHere() != null);
+    }
+
+    private void walkNorth(double lat, double lng, int fixes, double stepMeters) {
+        for (int fix = 0; fix < fixes; fix++) {
+            detector.onFix(fix * FIX_MILLIS, lat + fix * stepMeters / 111_320, lng);
+        }
+    }
+
+    private void stand(double lat, double lng, int firstFix, int fixes, double jitterMeters) {
+        Random random = new Random(42);
+        double cos = Math.cos(Math.toRadians(lat));
+        for (int fix = firstFix; fix < firstFix + fixes; fix++) {
+            double jitterLat = (random.nextDouble() - 0.5) * 2 * jitterMeters / 111_320;
+            double jitterLng = (random.nextDouble() - 0.5) * 2 * jitterMeters / 111_320 / cos;
+            detector.onFix(fix * FIX_MILLIS, lat + jitterLat, lng + jitterLng);
+        }
+    }
+
+    private static void ride(LapDetector detector, double lat, double lng, int fixes, double jitterMeters) {
+        Random random = new Random(42);
+        for (int fix = 0; fix < fixes; fix++) {
+            fix(detector, lat, lng, fix, jitterMeters, random);
+        }
+    }
+
+    // Counter clockwise circle of about 450m radius, a lap every FIXES_PER_LAP fixes.
+    private static void fix(LapDetector detector, double lat, double lng, int fix, double jitterMeters, Random random) {
+        double radius = 0.004;
+        double angle = 2 * Math.PI * fix / FIXES_PER_LAP;
+        double cos = Math.cos(Math.toRadians(lat));
+        double jitterLat = random == null ? 0 : (random.nextDouble() - 0.5) * 2 * jitterMeters / 111_320;
+        double jitterLng = random == null ? 0 : (random.nextDouble() - 0.5) * 2 * jitterMeters / 111_320 / cos;
+        detector.onFix(fix * FIX_MILLIS, lat + radius * Math.cos(angle) + jitterLat, lng + radius * Math.sin(angle) / cos + jitterLng);
+    }
+}
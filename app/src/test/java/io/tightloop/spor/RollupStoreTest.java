@@ -0,0 +1,87 @@
+package io.tightloop.spor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollupStoreTest {
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Oslo"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void daysChangeAtLocalMidnight() {
+        // 00:30 in Oslo is still the previous day in UTC.
+        assertEquals(RollupStore.dayKey(local(2024, 1, 10, 23, 30)) + 1, RollupStore.dayKey(local(2024, 1, 11, 0, 30)));
+        assertEquals(RollupStore.dayKey(local(2024, 7, 10, 0, 30)), RollupStore.dayKey(local(2024, 7, 10, 23, 30)));
+    }
+
+    @Test
+    public void weeksStartOnMonday() {
+        // 2024-01-01 was a Monday.
+        int week = RollupStore.weekKey(local(2024, 1, 1, 0, 30));
+        assertEquals(RollupStore.dayKey(local(2024, 1, 1, 12, 0)), week);
+        for (int day = 1; day <= 7; day++) {
+            assertEquals(week, RollupStore.weekKey(local(2024, 1, day, 0, 30)));
+            assertEquals(week, RollupStore.weekKey(local(2024, 1, day, 23, 30)));
+        }
+        assertEquals(week - 7, RollupStore.weekKey(local(2023, 12, 31, 23, 30)));
+        assertEquals(week + 7, RollupStore.weekKey(local(2024, 1, 8, 0, 30)));
+    }
+
+    @Test
+    public void weekKeyIsMondayOfEveryDay() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        long start = local(2020, 1, 1, 0, 0);
+        for (long timestamp = start; timestamp < start + TimeUnit.DAYS.toMillis(3 * 366); timestamp += TimeUnit.MINUTES.toMillis(97)) {
+            int week = RollupStore.weekKey(timestamp);
+            calendar.setTimeInMillis(TimeUnit.DAYS.toMillis(week));
+            assertEquals(Calendar.MONDAY, calendar.get(Calendar.DAY_OF_WEEK));
+
+            int day = RollupStore.dayKey(timestamp);
+            assertTrue(day >= week && day < week + 7);
+        }
+    }
+
+    @Test
+    public void weekSpansDaylightSavingChanges() {
+        // Clocks went forward on Sunday 2024-03-31 and back on Sunday 2024-10-27.
+        assertEquals(RollupStore.weekKey(local(2024, 3, 25, 0, 30)), RollupStore.weekKey(local(2024, 3, 31, 23, 30)));
+        assertEquals(RollupStore.weekKey(local(2024, 10, 21, 0, 30)), RollupStore.weekKey(local(2024, 10, 27, 23, 30)));
+        assertNotEquals(RollupStore.weekKey(local(2024, 10, 27, 23, 30)), RollupStore.weekKey(local(2024, 10, 28, 0, 30)));
+    }
+
+    @Test
+    public void monthsChangeAtLocalMidnight() {
+        int january = RollupStore.monthKey(local(2024, 1, 1, 0, 30));
+        assertEquals(january, RollupStore.monthKey(local(2024, 1, 31, 23, 30)));
+        assertEquals(january + 1, RollupStore.monthKey(local(2024, 2, 1, 0, 30)));
+        assertEquals(january + 1, RollupStore.monthKey(local(2024, 2, 29, 23, 30)));
+        assertEquals(january - 1, RollupStore.monthKey(local(2023, 12, 31, 23, 30)));
+        assertEquals(january + 12, RollupStore.monthKey(local(2025, 1, 15, 12, 0)));
+    }
+
+    private static long local(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,245 @@
+package io.tightloop.spor;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TelemetryBinderTest {
+    private static final double[] TIES = {0.5, 1.5, 2.5, -0.5, -2.5, 0.05, 0.15, 0.25, 0.35, 0.45, 1.05, 2.675, -0.05,
+            -0.15, 59.9123455, 10.7000005, -33.8688195, 179.9999995};
+    private static final double[] SPECIALS = {0.0, -0.0, -0.3, -0.04, -1e-9, 1e-9, 0.049999999999999996, 0.95, 9.95,
+            99.95, 999.5, 12_345_678.9, -12_345_678.9};
+
+    private final char[] buffer = new char[64];
+
+    @Test
+    public void coordinateMatchesFormat() {
+        for (double value : TIES) {
+            assertCoordinate(value);
+        }
+        for (double value : SPECIALS) {
+            assertCoordinate(value);
+        }
+        assertCoordinate(Double.NaN);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertCoordinate((random.nextDouble() - 0.5) * 360);
+            // Values on a ten millionth, half of them on a tie.
+            long tenMillionths = (random.nextInt(360_000_000) - 180_000_000) * 10L + (i % 2 == 0 ? 5 : random.nextInt(10));
+            assertCoordinate(tenMillionths / 10_000_000.);
+        }
+    }
+
+    @Test
+    public void altitudeMatchesFormat() {
+        for (double value : TIES) {
+            assertAltitude(value);
+        }
+        for (double value : SPECIALS) {
+            assertAltitude(value);
+        }
+        assertAltitude(Double.NaN);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertAltitude((random.nextDouble() - 0.2) * 9_000);
+            assertAltitude((random.nextInt(20_000) - 10_000) / 2.);
+        }
+    }
+
+    @Test
+    public void distanceMatchesFormat() {
+        long[] distances = {0, 49, 50, 51, 149, 150, 250, 99_950, 4_200_000_050L, Long.MAX_VALUE / 1_000};
+        for (long distanceInCm : distances) {
+            assertDistance(distanceInCm);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertDistance(random.nextInt(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void velocityMatchesFormat() {
+        for (double value : TIES) {
+            assertVelocity(value / 3.6);
+            assertVelocity(value);
+        }
+        for (double value : SPECIALS) {
+            assertVelocity(value);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertVelocity(random.nextDouble() * 100);
+            // Speeds reported by the location provider are floats.
+            assertVelocity(random.nextInt(100_000) / 1_000f);
+        }
+    }
+
+    @Test
+    public void durationMatchesFormat() {
+        long[] durations = {0, TimeUnit.SECONDS.toNanos(59), TimeUnit.MINUTES.toNanos(1) - 1, TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.HOURS.toNanos(1) - 1, TimeUnit.HOURS.toNanos(1), TimeUnit.HOURS.toNanos(25) + 1,
+                TimeUnit.DAYS.toNanos(400), Long.MAX_VALUE};
+        for (long durationNanos : durations) {
+            assertDuration(durationNanos);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertDuration(random.nextLong() & Long.MAX_VALUE);
+            assertDuration((long) (random.nextDouble() * TimeUnit.DAYS.toNanos(2)));
+        }
+    }
+
+    @Test
+    public void bindDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        CountingTarget[] targets = targets();
+        TelemetryBinder binder = binder(targets);
+
+        // Warm up so the measured loop runs compiled, and measure the cost of reading the counter itself.
+        bindAll(binder, 100_000);
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            overhead = Math.min(overhead, threads.getThreadAllocatedBytes(thread) - before);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        bindAll(binder, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals("Bytes allocated by 100000 updates", 0, allocated);
+        // Every update changed some labels, so the measured loop did reach setText.
+        assertTrue(targets[0].calls > 100_000);
+    }
+
+    @Test
+    public void unchangedLabelsAreNotSet() {
+        CountingTarget[] targets = targets();
+        TelemetryBinder binder = binder(targets);
+
+        binder.bind(59.9, 10.7, 120, 12_345, 3.2, TimeUnit.MINUTES.toNanos(75));
+        for (CountingTarget target : targets) {
+            assertEquals(1, target.calls);
+        }
+        assertEquals("10.700000", targets[0].text());
+        assertEquals("59.900000", targets[1].text());
+        assertEquals("120m", targets[2].text());
+        assertEquals("123m", targets[3].text());
+        assertEquals("11.5km/h", targets[4].text());
+        assertEquals("1h15m", targets[5].text());
+
+        // Same text, even if the values differ below the precision shown.
+        binder.bind(59.9000001, 10.7, 120.2, 12_345, 3.2, TimeUnit.MINUTES.toNanos(75) + 1);
+        for (CountingTarget target : targets) {
+            assertEquals(1, target.calls);
+        }
+
+        binder.bind(59.9000001, 10.7, 120.2, 12_345, 3.5, TimeUnit.MINUTES.toNanos(75) + 1);
+        assertEquals(2, targets[4].calls);
+        assertEquals("12.6km/h", targets[4].text());
+        for (int i = 0; i < targets.length; i++) {
+            if (i != 4) {
+                assertEquals(1, targets[i].calls);
+            }
+        }
+    }
+
+    @Test
+    public void labelKeepsShownTextWhileFormattingNext() {
+        CountingTarget target = new CountingTarget();
+        TelemetryBinder.Label label = new TelemetryBinder.Label(target);
+
+        label.update(TelemetryBinder.append(label.next(), 0, "12m"));
+        char[] shown = target.lastText;
+        label.update(TelemetryBinder.append(label.next(), 0, "12m"));
+        assertEquals(1, target.calls);
+
+        // The next value is formatted into the other buffer, the shown text stays intact until it is replaced.
+        assertTrue(label.next() != shown);
+        int length = TelemetryBinder.append(label.next(), 0, "13m");
+        assertEquals("12m", new String(shown, 0, 3));
+        label.update(length);
+        assertEquals(2, target.calls);
+        assertEquals("13m", target.text());
+
+        // Shorter text with a common prefix is still a change.
+        label.update(TelemetryBinder.append(label.next(), 0, "1"));
+        assertEquals(3, target.calls);
+        assertEquals("1", target.text());
+    }
+
+    private static final class CountingTarget implements TelemetryBinder.Target {
+        private int calls;
+        private char[] lastText;
+        private int lastLength;
+
+        @Override
+        public void setText(char[] text, int start, int length) {
+            calls++;
+            lastText = text;
+            lastLength = length;
+            assertEquals(0, start);
+        }
+
+        String text() {
+            return new String(lastText, 0, lastLength);
+        }
+    }
+
+    private static CountingTarget[] targets() {
+        CountingTarget[] targets = new CountingTarget[6];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = new CountingTarget();
+        }
+        return targets;
+    }
+
+    // Targets in order lng, lat, alt, distance, velocity, duration.
+    private static TelemetryBinder binder(CountingTarget[] targets) {
+        return new TelemetryBinder(targets[0], targets[1], targets[2], targets[3], targets[4], targets[5]);
+    }
+
+    private static void bindAll(TelemetryBinder binder, int updates) {
+        for (int i = 0; i < updates; i++) {
+            binder.bind(59.9 - i * 1e-6, 10.7 + i * 1e-6, 120 + i % 50 * 0.5, i * 137L, i % 300 * 0.05, i * 5_000_000_000L);
+        }
+    }
+
+    private void assertCoordinate(double value) {
+        String expected = Double.isNaN(value) ? "-" : String.format(Locale.US, "%.6f", value);
+        assertEquals("Coordinate " + value, expected, new String(buffer, 0, TelemetryBinder.formatCoordinate(buffer, value)));
+    }
+
+    private void assertAltitude(double value) {
+        String expected = Double.isNaN(value) ? "-" : String.format(Locale.US, "%.0fm", value);
+        assertEquals("Altitude " + value, expected, new String(buffer, 0, TelemetryBinder.formatAltitude(buffer, value)));
+    }
+
+    private void assertDistance(long distanceInCm) {
+        String expected = String.format(Locale.US, "%.0fm", distanceInCm / 100.);
+        assertEquals("Distance " + distanceInCm, expected, new String(buffer, 0, TelemetryBinder.formatDistance(buffer, distanceInCm)));
+    }
+
+    private void assertVelocity(double speedInMetersPerSecond) {
+        String expected = String.format(Locale.US, "%.1fkm/h", 3.6 * speedInMetersPerSecond);
+        assertEquals("Velocity " + speedInMetersPerSecond, expected, new String(buffer, 0, TelemetryBinder.formatVelocity(buffer, speedInMetersPerSecond)));
+    }
+
+    private void assertDuration(long durationNanos) {
+        String expected = String.format(Locale.US, "%dh%dm", durationNanos / TimeUnit.HOURS.toNanos(1), (durationNanos % TimeUnit.HOURS.toNanos(1)) / TimeUnit.MINUTES.toNanos(1));
+        assertEquals("Duration " + durationNanos, expected, new String(buffer, 0, TelemetryBinder.formatDuration(buffer, durationNanos)));
+    }
+}
@@ -0,0 +1,141 @@
+package io.tightloop.spor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackSummaryTest {
+    private static final long START = 1_700_000_000_000L;
+    // Latitude step of 10m along a meridian.
+    private static final double STEP_DEGREES = Math.toDegrees(10 / 6_378_136.);
+
+    @Test
+    public void findsFastestWindowForEachRecord() {
+        // 3km at 2m/s, 2km at 5m/s, then 6km at 2m/s.
+        TrackSummary summary = new TrackSummary();
+        long timestamp = START;
+        double lat = 59.9;
+        summary.add(timestamp, lat, 10.7, 0);
+        for (int step = 0; step < 1_100; step++) {
+            timestamp += step >= 300 && step < 500 ? 2_000 : 5_000;
+            lat += STEP_DEGREES;
+            summary.add(timestamp, lat, 10.7, 0);
+        }
+        summary.finish();
+
+        assertEquals(11_000, summary.getDistanceMeters(), 0.01);
+        assertEquals(timestamp - START, summary.getDurationMillis());
+        // All within the fast part.
+        assertEquals(100 * 2_000, summary.getFastestMillis(0), 5_000);
+        // The fast part, plus the rest at 2m/s.
+        assertEquals(200 * 2_000 + 300 * 5_000, summary.getFastestMillis(1), 5_000);
+        assertEquals(200 * 2_000 + 800 * 5_000, summary.getFastestMillis(2), 5_000);
+    }
+
+    @Test
+    public void matchesEveryWindow() {
+        Random random = new Random(42);
+        for (int track = 0; track < 20; track++) {
+            int points = 200 + random.nextInt(2_000);
+            long[] timestamps = new long[points];
+            double[] distances = new double[points];
+            TrackSummary summary = new TrackSummary();
+            double lat = 59.9;
+            double lng = 10.7;
+            double alt = 100;
+            for (int i = 0; i < points; i++) {
+                timestamps[i] = START + i * 5_000L + random.nextInt(5_000);
+                if (i > 0) {
+                    double nextLat = lat + (random.nextDouble() - 0.2) * 0.0005;
+                    double nextLng = lng + (random.nextDouble() - 0.2) * 0.001;
+                    double nextAlt = alt + random.nextGaussian();
+                    distances[i] = distances[i - 1] + DistanceUtil.distanceInMeters(lat, nextLat, lng, nextLng, alt, nextAlt);
+                    lat = nextLat;
+                    lng = nextLng;
+                    alt = nextAlt;
+                }
+                summary.add(timestamps[i], lat, lng, alt);
+            }
+            summary.finish();
+
+            for (int r = 0; r < TrackSummary.RECORD_METERS.length; r++) {
+                long expected = -1;
+                for (int end = 0; end < points; end++) {
+                    for (int start = end - 1; start >= 0; start--) {
+                        if (distances[end] - distances[start] >= TrackSummary.RECORD_METERS[r]) {
+                            long millis = timestamps[end] - timestamps[start];
+                            if (expected < 0 || millis < expected) {
+                                expected = millis;
+                            }
+                            break;
+                        }
+                    }
+                }
+                assertEquals("Record " + TrackSummary.RECORD_METERS[r] + "m of track " + track, expected, summary.getFastestMillis(r));
+            }
+        }
+    }
+
+    @Test
+    public void shortTrackHasNoRecords() {
+        TrackSummary summary = new TrackSummary();
+        for (int step = 0; step < 99; step++) {
+            summary.add(START + step * 1_000L, 59.9 + step * STEP_DEGREES, 10.7, 0);
+        }
+        summary.finish();
+
+        for (int r = 0; r < TrackSummary.RECORD_METERS.length; r++) {
+            assertEquals(-1, summary.getFastestMillis(r));
+        }
+    }
+
+    @Test
+    public void emptyTrack() {
+        TrackSummary summary = new TrackSummary();
+        summary.finish();
+
+        assertEquals(-1, summary.getStartTimestamp());
+        assertEquals(0, summary.getDurationMillis());
+        assertEquals(0, summary.getDistanceMeters(), 0);
+    }
+
+    @Test
+    public void countsElevationGain() {
+        TrackSummary summary = new TrackSummary();
+        double[] alts = {100, 110, 105, 120, 90, 95};
+        for (int i = 0; i < alts.length; i++) {
+            summary.add(START + i * 1_000L, 59.9, 10.7, alts[i]);
+        }
+        summary.finish();
+
+        assertEquals(10 + 15 + 5, summary.getElevationGainMeters(), 1e-9);
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        TrackSummary summary = new TrackSummary();
+        for (int step = 0; step < 600; step++) {
+            summary.add(START + step * 3_000L, 59.9 + step * STEP_DEGREES, 10.7, step % 10);
+        }
+        summary.finish();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.write(new DataOutputStream(bytes));
+        TrackSummary read = TrackSummary.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(summary.getStartTimestamp(), read.getStartTimestamp());
+        assertEquals(summary.getDurationMillis(), read.getDurationMillis());
+        assertEquals(summary.getDistanceMeters(), read.getDistanceMeters(), 0);
+        assertEquals(summary.getElevationGainMeters(), read.getElevationGainMeters(), 0);
+        for (int r = 0; r < TrackSummary.RECORD_METERS.length; r++) {
+            assertEquals(summary.getFastestMillis(r), read.getFastestMillis(r));
+        }
+    }
+}